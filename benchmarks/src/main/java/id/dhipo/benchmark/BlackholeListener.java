@@ -0,0 +1,60 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.benchmark;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import id.dhipo.sdkbridge.PackageRow;
+import id.dhipo.sdkbridge.SdkListener;
+
+/**
+ * Sinks every event into a blackhole so the parser's work is not optimized away.
+ */
+final class BlackholeListener implements SdkListener {
+
+    private final Blackhole bh;
+
+    BlackholeListener(Blackhole bh) {
+        this.bh = bh;
+    }
+
+    @Override
+    public void onPackage(PackageRow row) {
+        bh.consume(row);
+    }
+
+    @Override
+    public void onProgress(int percent) {
+        bh.consume(percent);
+    }
+
+    @Override
+    public void onStatus(String status) {
+        bh.consume(status);
+    }
+
+    @Override
+    public void onOutput(String line) {
+        bh.consume(line);
+    }
+
+    @Override
+    public void onError(String message) {
+        bh.consume(message);
+    }
+}
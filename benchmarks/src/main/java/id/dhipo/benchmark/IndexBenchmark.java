@@ -0,0 +1,67 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import id.dhipo.sdkbridge.PackageIndex;
+
+/**
+ * Answering the queries typed into the search field one keystroke at a time.
+ * Building the index is measured by {@link IndexBuildBenchmark}, which does not
+ * repeat for every query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexBenchmark {
+
+    @Param({ "100", "1k", "10k" })
+    public String size;
+
+    @Param({ "s", "sys 3", "sys 34 x86", "system-images;android-34;google_apis;x86_64" })
+    public String query;
+
+    private PackageIndex index;
+
+    @Setup
+    public void setUp() {
+        index = IndexBuildBenchmark.build(Listings.rows(size));
+    }
+
+    @Benchmark
+    public Set<String> search() {
+        return index.search(query);
+    }
+}
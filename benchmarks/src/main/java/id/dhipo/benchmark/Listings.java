@@ -0,0 +1,71 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import id.dhipo.sdkbridge.PackageRow;
+import id.dhipo.sdkbridge.SdkListener;
+import id.dhipo.sdkbridge.SdkManagerOutputParser;
+
+/**
+ * Loads the recorded {@code sdkmanager --list} outputs bundled with the
+ * benchmarks. Sizes are the number of rows in the Available Packages table.
+ */
+final class Listings {
+
+    private Listings() {
+    }
+
+    static byte[] load(String size) {
+        String resource = "/listings/sdkmanager-list-" + size + ".txt";
+        try (InputStream in = Listings.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No recorded listing for size " + size);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException err) {
+            throw new UncheckedIOException(err);
+        }
+    }
+
+    /**
+     * @return the package rows of a recorded listing, in output order
+     */
+    static List<PackageRow> rows(String size) {
+        List<PackageRow> rows = new ArrayList<PackageRow>();
+        new SdkManagerOutputParser(new SdkListener() {
+            @Override
+            public void onPackage(PackageRow row) {
+                rows.add(row);
+            }
+        }).parse(new String(load(size)));
+        return rows;
+    }
+}
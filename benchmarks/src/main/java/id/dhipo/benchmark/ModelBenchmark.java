@@ -0,0 +1,153 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import id.dhipo.ChangeSet;
+import id.dhipo.TablePackagesModel;
+import id.dhipo.TablePackagesModel.PackageInfo;
+import id.dhipo.TablePackagesModel.PackageState;
+import id.dhipo.sdkbridge.PackageRow;
+
+/**
+ * Operations on {@link TablePackagesModel} that the GUI performs while a
+ * listing loads, while the table paints and when changes are applied.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ModelBenchmark {
+
+    @Param({ "100", "1k", "10k" })
+    public String size;
+
+    private List<PackageRow> rows;
+    private TablePackagesModel populated;
+
+    @Setup
+    public void setUp() {
+        rows = Listings.rows(size);
+        populated = new TablePackagesModel();
+        populated.updatePackages(rows);
+        // Mark roughly one package in a hundred, the way a user would before Apply
+        for (int row = 0; row < populated.getRowCount(); row += 100) {
+            populated.setValueAt(!(Boolean) populated.getValueAt(row, 0), row, 0);
+        }
+    }
+
+    /**
+     * One updatePackage call per row, as the listener did before rows were batched.
+     */
+    @Benchmark
+    public TablePackagesModel updatePackage() {
+        TablePackagesModel model = new TablePackagesModel();
+        for (int i = 0; i < rows.size(); i++) {
+            PackageRow row = rows.get(i);
+            PackageInfo info = model.getPackage(row.getId());
+            if (info == null) {
+                info = new PackageInfo();
+            }
+            switch (row.getKind()) {
+            case INSTALLED:
+                info.setName(row.getDescription());
+                info.setVersionInstalled(row.getVersion());
+                break;
+            case AVAILABLE:
+                info.setName(row.getDescription());
+                info.setVersionAvailable(row.getVersion());
+                break;
+            default:
+                info.setVersionInstalled(row.getInstalledVersion());
+                info.setVersionAvailable(row.getVersion());
+                break;
+            }
+            model.updatePackage(row.getId(), info);
+        }
+        return model;
+    }
+
+    @Benchmark
+    public TablePackagesModel updatePackages() {
+        TablePackagesModel model = new TablePackagesModel();
+        model.updatePackages(rows);
+        return model;
+    }
+
+    /**
+     * Merges an identical listing into a populated model, which is what a refresh
+     * after Apply costs when little has changed.
+     */
+    @Benchmark
+    public TablePackagesModel refresh() {
+        populated.beginRefresh();
+        populated.updatePackages(rows);
+        populated.endRefresh();
+        return populated;
+    }
+
+    /**
+     * Reads every cell once, which is what a full repaint of the table costs the model.
+     */
+    @Benchmark
+    public void getValueAt(Blackhole bh) {
+        int rowCount = populated.getRowCount();
+        int columnCount = populated.getColumnCount();
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                bh.consume(populated.getValueAt(row, column));
+            }
+        }
+    }
+
+    @Benchmark
+    public String[] getUpdates() {
+        return populated.getUpdates();
+    }
+
+    @Benchmark
+    public void getMark(Blackhole bh) {
+        bh.consume(populated.getMark(PackageState.MARK_INSTALL));
+        bh.consume(populated.getMark(PackageState.MARK_REMOVE));
+    }
+
+    /**
+     * The snapshot the Apply dialog is built from.
+     */
+    @Benchmark
+    public ChangeSet getChanges() {
+        return populated.getChanges();
+    }
+}
@@ -0,0 +1,80 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import id.dhipo.sdkbridge.AndroidSDK;
+import id.dhipo.sdkbridge.SdkManagerOutputParser;
+
+/**
+ * Cost of turning a whole recorded listing into events, without any consumer
+ * work attached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({ "100", "1k", "10k" })
+    public String size;
+
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        output = Listings.load(size);
+    }
+
+    @Benchmark
+    public void parseStream(Blackhole bh) throws IOException {
+        new SdkManagerOutputParser(new BlackholeListener(bh)).parse(new ByteArrayInputStream(output));
+    }
+
+    @Benchmark
+    public void replayOutput(Blackhole bh) {
+        new AndroidSDK("", new BlackholeListener(bh)).replayOutput(new ByteArrayInputStream(output));
+    }
+
+    /**
+     * The same replay through the {@code Consumer<SDKAction>} adapter, to keep an
+     * eye on what old-style listeners cost.
+     */
+    @Benchmark
+    public void replayOutputLegacyListener(Blackhole bh) {
+        new AndroidSDK("", bh::consume).replayOutput(new ByteArrayInputStream(output));
+    }
+}
@@ -0,0 +1,74 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import id.dhipo.PackageBatcher;
+import id.dhipo.TablePackagesModel;
+import id.dhipo.sdkbridge.AndroidSDK;
+
+/**
+ * End-to-end cost of a listing: replayed sdkmanager output, parsed on the
+ * calling thread, batched and applied to the model on the event dispatch
+ * thread. Each operation waits until the EDT has drained the last chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PipelineBenchmark {
+
+    @Param({ "100", "1k", "10k" })
+    public String size;
+
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        output = Listings.load(size);
+    }
+
+    @Benchmark
+    public int listenerToModel() throws InterruptedException, InvocationTargetException {
+        TablePackagesModel model = new TablePackagesModel();
+        PackageBatcher batcher = new PackageBatcher(model);
+        new AndroidSDK("", batcher).replayOutput(new ByteArrayInputStream(output));
+        int[] rowCount = new int[1];
+        SwingUtilities.invokeAndWait(() -> rowCount[0] = model.getRowCount());
+        return rowCount[0];
+    }
+}
@@ -25,10 +25,16 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.io.File;
-import java.util.function.Consumer;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.JButton;
+import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -38,16 +44,34 @@ import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
+import javax.swing.KeyStroke;
 import javax.swing.SpringLayout;
+import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableModel;
+import javax.swing.table.TableRowSorter;
 
-import id.dhipo.TablePackagesModel.PackageInfo;
 import id.dhipo.sdkbridge.AndroidSDK;
-import id.dhipo.sdkbridge.SDKAction;
+import id.dhipo.sdkbridge.DeferredSdkListener;
+import id.dhipo.sdkbridge.DiskUsage;
+import id.dhipo.sdkbridge.InstallScheduler;
+import id.dhipo.sdkbridge.OperationLog;
+import id.dhipo.sdkbridge.PackageIndex;
+import id.dhipo.sdkbridge.PackageRow;
+import id.dhipo.sdkbridge.ProgressSampler;
+import id.dhipo.sdkbridge.RepositorySource;
+import id.dhipo.sdkbridge.SdkListener;
+import id.dhipo.sdkbridge.SdkMetrics;
+import id.dhipo.sdkbridge.SdkTaskExecutor;
+import id.dhipo.sdkbridge.SdkWatcher;
 
 class AndroidGUI extends JFrame implements ActionListener {
 
@@ -55,87 +79,179 @@ class AndroidGUI extends JFrame implements ActionListener {
 
     private JTable tblPackages = new JTable();
     private TablePackagesModel tmdPackages = new TablePackagesModel();
+    private PackageBatcher batcher;
     private JTextField txtPath = new JTextField();
+    private JTextField txtSearch = new JTextField();
+    private PackageIndex packageIndex = new PackageIndex();
+    private PackageFilter packageFilter = new PackageFilter(packageIndex);
     private JButton btnPath = new JButton("Browse…");
     private JButton btnApply = new JButton("Apply Changes");
     private JButton btnUpdate = new JButton("");
+    private JButton btnCancel = new JButton("Cancel");
+    private JButton btnLog = new JButton("Log");
     private JProgressBar prgInstall = new JProgressBar();
     private JScrollPane scrollPane = new JScrollPane(tblPackages);
     private SpringLayout layout = new SpringLayout();
     private Container contentPane = getContentPane();
     private JLabel lblStatus = new JLabel("Idle");
-    private String[] updates = {};
-    private AndroidSDK sdk;
+    private ProgressTicker ticker = new ProgressTicker(prgInstall, lblStatus);
+    private ProgressSampler progress = ticker.getSampler();
+    // Set on the event dispatch thread, read by the listeners of every SDK
+    private volatile AndroidSDK sdk;
+    private SdkTaskExecutor.Task listing;
+    private SdkWatcher watcher;
+    private final StartupTimer startup;
+    private JFileChooser fileChooser;
+    private MetricsDialog metricsDialog;
+    private LogDialog logDialog;
+    // Every sdkmanager run of the application goes through here
+    private static final SdkTaskExecutor TASKS = new SdkTaskExecutor();
+    // Output of every sdkmanager run, kept for the log window
+    private static final OperationLog LOG = new OperationLog();
     public static final String CMD_PATH = "PATH";
     public static final String CMD_APPLY = "APPLY";
     public static final String CMD_UPDATE = "UPDATE";
-    private Consumer<SDKAction> sdkListener = (action) -> {
-        switch (action.getAction()) {
-        case SDKAction.ACTION_INSTALLED:
-            SwingUtilities.invokeLater(() -> {
-                TablePackagesModel.PackageInfo info = this.tmdPackages.getData().getOrDefault(action.getPayload(),
-                        new TablePackagesModel.PackageInfo());
-                info.setName(action.getExtra()[1]);
-                info.setVersionInstalled(action.getExtra()[0]);
-                this.tmdPackages.updatePackage(action.getPayload(), info);
-            });
-            break;
-        case SDKAction.ACTION_AVAILABLE:
-            SwingUtilities.invokeLater(() -> {
-                TablePackagesModel.PackageInfo info = this.tmdPackages.getData().getOrDefault(action.getPayload(),
-                        new TablePackagesModel.PackageInfo());
-                info.setName(action.getExtra()[1]);
-                info.setVersionAvailable(action.getExtra()[0]);
-                this.tmdPackages.updatePackage(action.getPayload(), info);
-            });
-            break;
-        case SDKAction.ACTION_DONE:
-            SwingUtilities.invokeLater(() -> {
-                prgInstall.setValue(0);
-                lblStatus.setText("Idle");
-                scrollPane.revalidate();
-                // TODO: Automatically set column width to match longest cell content.
-                this.tblPackages.getColumnModel().getColumn(0).setMaxWidth(32);
-                this.tblPackages.getColumnModel().getColumn(2).setPreferredWidth(160);
-                this.tblPackages.getColumnModel().getColumn(2).setMaxWidth(160);
-                updates = tmdPackages.getUpdates();
-                this.pack();
-                uiLock(false);
-                btnUpdate.setText((updates.length > 0) ? "Install " + updates.length + " Update(s)" : "No Updates");
-                btnUpdate.setEnabled((updates.length > 0));
-            });
-            break;
-        case SDKAction.ACTION_PROGRESS:
-            SwingUtilities.invokeLater(() -> {
-                String payload = action.getPayload();
-                prgInstall.setValue(Integer.parseInt(payload));
-                lblStatus.setText(payload.toString() + "%");
-            });
-            break;
-        case SDKAction.ACTION_STATUS:
-        case SDKAction.ACTION_OTHER:
+    public static final String CMD_CANCEL = "CANCEL";
+    public static final String CMD_METRICS = "METRICS";
+    public static final String CMD_LOG = "LOG";
+    private InstallScheduler.Listener installListener = new InstallScheduler.Listener() {
+        @Override
+        public void jobProgress(String packageId, int percent, String status) {
+            progress.setStatus((packageId == null ? "Removing packages" : packageId) + ": " + percent + "% " + status);
+        }
+
+        @Override
+        public void jobFinished(String packageId, boolean success, String message) {
+            if (!success) {
+                SwingUtilities.invokeLater(() -> {
+                    String target = packageId == null ? "Removing packages" : packageId;
+                    JOptionPane.showMessageDialog(AndroidGUI.this,
+                            target + " failed: " + message + "\nThe Log button shows its output.", "Apply Changes",
+                            JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        }
+
+        @Override
+        public void aggregateProgress(int percent, int finished, int total) {
+            progress.setPercent(percent);
             SwingUtilities.invokeLater(() -> {
-                String payload = action.getPayload();
-                if (!(payload.contains("|") || payload.trim().isEmpty())) {
-                    lblStatus.setText(payload);
-                }
+                prgInstall.setToolTipText(finished + " of " + total + " done");
             });
-            break;
-        default:
-            break;
         }
     };
+    /**
+     * Listens to the runs of one SDK. Once another SDK is shown its events are
+     * dropped, including rows and updates already on their way to the event
+     * dispatch thread, so a listing still winding down cannot touch the table.
+     */
+    private SdkListener eventsOf(AndroidSDK owner, PackageBatcher rows) {
+        return new SdkListener() {
+            @Override
+            public void onPackage(PackageRow row) {
+                if (sdk == owner) {
+                    packageIndex.add(row);
+                    rows.onPackage(row);
+                }
+            }
+
+            @Override
+            public void onRefresh(int cachedRows) {
+                rows.onRefresh(cachedRows);
+                post("onRefresh", () -> {
+                    tmdPackages.beginRefresh();
+                    if (cachedRows > 0) {
+                        lblStatus.setText("Showing cached package list, refreshing…");
+                    }
+                });
+            }
+
+            @Override
+            public void onDone() {
+                rows.onDone();
+                post("onDone", () -> {
+                    tmdPackages.endRefresh();
+                    showIdle();
+                    if (startup.mark(StartupTimer.Phase.LISTING_COMPLETE) && lblStatus.getText().equals("Idle")) {
+                        lblStatus.setText(startup.summary());
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String message) {
+                rows.onError(message);
+                post("onError", () -> {
+                    tmdPackages.cancelRefresh();
+                    progress.reset();
+                    lblStatus.setText("Error: " + message);
+                });
+            }
+
+            @Override
+            public void onProgress(int percent) {
+                rows.onProgress(percent);
+                if (sdk == owner) {
+                    progress.setPercent(percent);
+                }
+            }
+
+            @Override
+            public void onStatus(String status) {
+                onOutput(status);
+            }
+
+            @Override
+            public void onOutput(String line) {
+                rows.onOutput(line);
+                if (sdk == owner && !(line.contains("|") || line.trim().isEmpty())) {
+                    progress.setStatus(line);
+                }
+            }
+
+            private void post(String source, Runnable task) {
+                PackageBatcher.post(source, () -> {
+                    if (sdk == owner) {
+                        task.run();
+                    }
+                });
+            }
+        };
+    }
 
     public AndroidGUI() {
+        this(new StartupTimer());
+    }
+
+    public AndroidGUI(StartupTimer startup) {
+        this.startup = startup;
         initComponents();
     }
 
     public static void main(String[] args) {
+        StartupTimer startup = new StartupTimer();
+        startup.mark(StartupTimer.Phase.MAIN);
+        SdkMetrics.recordFromProperty();
         try {
             System.setProperty("awt.useSystemAAFontSettings", "on");
         } catch (Exception e) {
 
         }
+        // Launching sdkmanager and scanning the SDK take longer than building the
+        // window, so start the listing right away and hand its events over once the
+        // window is up.
+        String sdkPath = System.getenv("ANDROID_HOME");
+        AndroidSDK earlySdk = null;
+        SdkTaskExecutor.Task earlyListing = null;
+        DeferredSdkListener earlyEvents = new DeferredSdkListener();
+        if (sdkPath != null && new File(sdkPath).isDirectory()) {
+            earlySdk = new AndroidSDK(sdkPath, earlyEvents);
+            earlySdk.setLog(LOG);
+            earlyListing = TASKS.submit("List packages", earlySdk.getSdkPath(), SdkTaskExecutor.Access.READ,
+                    earlySdk::getPackageList, earlySdk::cancel);
+        }
+        AndroidSDK startedSdk = earlySdk;
+        SdkTaskExecutor.Task startedListing = earlyListing;
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -156,26 +272,119 @@ class AndroidGUI extends JFrame implements ActionListener {
                 } catch (Exception e) {
                     System.err.println(e.getLocalizedMessage());
                 }
-                AndroidGUI gui = new AndroidGUI();
+                AndroidGUI gui = new AndroidGUI(startup);
                 gui.setVisible(true);
+                startup.mark(StartupTimer.Phase.FRAME_VISIBLE);
                 gui.tmdPackages.clear();
-                gui.setSdkPath(System.getenv("ANDROID_HOME"));
+                if (startedSdk != null) {
+                    gui.attachSdk(startedSdk, earlyEvents, startedListing);
+                } else {
+                    gui.setSdkPath(sdkPath);
+                }
             }
         });
     }
 
+    /**
+     * Takes over an SDK whose listing is already running, replaying the events it
+     * sent so far.
+     */
+    private void attachSdk(AndroidSDK startedSdk, DeferredSdkListener events, SdkTaskExecutor.Task started) {
+        sdk = startedSdk;
+        batcher = new PackageBatcher(tmdPackages);
+        listing = started;
+        txtPath.setText(startedSdk.getSdkPath().getPath());
+        uiLock(true);
+        events.attach(eventsOf(startedSdk, batcher));
+        watchSdk(startedSdk.getSdkPath());
+    }
+
+    /**
+     * Lists the packages again. The listing is merged into the rows already shown,
+     * so only packages that changed are repainted and the sort order, selection
+     * and scroll position stay as they are.
+     */
     public void refreshPackages() {
         if (SwingUtilities.isEventDispatchThread()) {
-            tmdPackages.clear();
-            Thread procSdk = new Thread(() -> {
-                sdk.getPackageList();
-            });
-            procSdk.start();
+            AndroidSDK listed = sdk;
+            listing = TASKS.submit("List packages", listed.getSdkPath(), SdkTaskExecutor.Access.READ,
+                    listed::getPackageList, listed::cancel);
         } else {
             System.out.println("DBG: AndroidGUI.refreshPackages called outside event dispatch thread");
         }
     }
 
+    /**
+     * Runs a plan through the install scheduler, then updates the table from
+     * what sdkmanager reported. The packages are only listed again if that
+     * report does not account for every change. Must be called on the event
+     * dispatch thread.
+     */
+    public void applyChanges(ChangePlanner.Plan plan) {
+        uiLock(true);
+        InstallScheduler changes = new InstallScheduler(sdk.getSdkPath());
+        changes.setLog(LOG);
+        TASKS.submit("Apply changes", sdk.getSdkPath(), SdkTaskExecutor.Access.WRITE, () -> {
+            boolean applied = false;
+            Throwable failure = null;
+            try {
+                applied = changes.apply(plan.getRemoves(), plan.getGroups(), installListener);
+            } catch (RuntimeException | Error err) {
+                failure = err;
+                throw err;
+            } finally {
+                // Whatever happened, the window has to be unlocked again
+                boolean succeeded = applied;
+                Throwable error = failure;
+                SwingUtilities.invokeLater(() -> changesApplied(plan, changes, succeeded, error));
+            }
+        }, changes::cancel);
+    }
+
+    /**
+     * Reports how applying a plan went and brings the table up to date.
+     *
+     * @param applied whether every job succeeded
+     * @param failure what the apply task threw, or null
+     */
+    private void changesApplied(ChangePlanner.Plan plan, InstallScheduler changes, boolean applied,
+            Throwable failure) {
+        tmdPackages.clearMarks();
+        if (failure != null) {
+            lblStatus.setText("Error: " + failure);
+            JOptionPane.showMessageDialog(this, "Applying changes failed: " + failure
+                    + "\nThe packages are listed again to show what was changed.", "Apply Changes",
+                    JOptionPane.ERROR_MESSAGE);
+            refreshPackages();
+            return;
+        }
+        if (!applied) {
+            lblStatus.setText("Error: Not every change was applied. The Log button shows sdkmanager's output.");
+        }
+        if (tmdPackages.applyReport(plan.getChanges(), changes.getReport())) {
+            showIdle();
+        } else {
+            refreshPackages();
+        }
+    }
+
+    /**
+     * Unlocks the window once the packages shown are up to date again.
+     */
+    private void showIdle() {
+        prgInstall.setValue(0);
+        if (!lblStatus.getText().startsWith("Error: ")) {
+            lblStatus.setText("Idle");
+        }
+        scrollPane.revalidate();
+        int updateCount = tmdPackages.getUpdateCount();
+        pack();
+        uiLock(false);
+        btnUpdate.setText((updateCount > 0) ? "Install " + updateCount + " Update(s)" : "No Updates");
+        btnUpdate.setEnabled((updateCount > 0));
+        measureDiskUsage();
+    }
+
     public void setStatus(String status) {
         if (SwingUtilities.isEventDispatchThread()) {
             lblStatus.setText(status);
@@ -186,12 +395,27 @@ class AndroidGUI extends JFrame implements ActionListener {
 
     public void setSdkPath(String sdkPath) {
         if (SwingUtilities.isEventDispatchThread()) {
-            sdk = new AndroidSDK(sdkPath, sdkListener);
+            // Stop listing the SDK shown so far and drop what it still sends
+            if (listing != null) {
+                listing.cancel();
+            }
+            if (batcher != null) {
+                batcher.discard();
+            }
+            AndroidSDK shown = new AndroidSDK(sdkPath);
+            batcher = new PackageBatcher(tmdPackages);
+            shown.setListener(eventsOf(shown, batcher));
+            shown.setLog(LOG);
+            sdk = shown;
             if (sdkPath != txtPath.getText()) {
                 txtPath.setText(sdkPath);
             }
+            // Rows of another SDK have nothing to be merged with
+            tmdPackages.clear();
+            packageIndex.clear();
             uiLock(true);
             refreshPackages();
+            watchSdk(sdk.getSdkPath());
         } else {
             System.out.println("DBG: AndroidGUI.setSdkPath called outside event dispatch thread");
         }
@@ -211,7 +435,13 @@ class AndroidGUI extends JFrame implements ActionListener {
             btnApply.setEnabled(!lock);
             btnUpdate.setEnabled(!lock);
             btnPath.setEnabled(!lock);
+            btnCancel.setEnabled(lock);
             tblPackages.setEnabled(!lock);
+            if (lock) {
+                ticker.start();
+            } else {
+                ticker.stop();
+            }
         } else {
             System.out.println("DBG: AndroidGUI.uiLock called outside event dispatch thread");
         }
@@ -219,93 +449,156 @@ class AndroidGUI extends JFrame implements ActionListener {
 
     @Override
     public void actionPerformed(ActionEvent e) {
-        Thread procSdk;
-        JLabel lblConfirm;
-        JPanel pnlConfirm;
-        JTable tblChanges;
-        TableModel tmdChanges;
-        JScrollPane scrChanges;
-        int answer;
         switch (e.getActionCommand()) {
         case CMD_APPLY:
-            String[] removes = tmdPackages.getMark(TablePackagesModel.PackageState.MARK_REMOVE);
-            String[] installs = tmdPackages.getMark(TablePackagesModel.PackageState.MARK_INSTALL);
-            if (removes.length + installs.length == 0) {
+            ChangeSet changes = tmdPackages.getChanges();
+            if (changes.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "No changes need to be applied", "No Change",
                         JOptionPane.INFORMATION_MESSAGE);
                 break;
             }
-            lblConfirm = new JLabel("These changes will be applied:");
-            pnlConfirm = new JPanel(new BorderLayout());
-            tmdChanges = new AbstractTableModel() {
-                private static final long serialVersionUID = 1L;
-                String[] headers = { "Action", "Package", "Version" };
+            ChangePlanner.Plan plan = planner().plan(changes);
+            if (confirmPlan(plan, "These changes will be applied", "Apply Changes")) {
+                applyChanges(plan);
+            }
+            break;
+        case CMD_CANCEL:
+            TASKS.cancelAll();
+            lblStatus.setText("Cancelling…");
+            break;
+        case CMD_LOG:
+            if (logDialog == null || !logDialog.isDisplayable()) {
+                logDialog = new LogDialog(this, LOG);
+            }
+            logDialog.setVisible(true);
+            break;
+        case CMD_METRICS:
+            if (metricsDialog == null || !metricsDialog.isDisplayable()) {
+                metricsDialog = new MetricsDialog(this);
+            }
+            metricsDialog.setVisible(true);
+            break;
+        case CMD_PATH:
+            JFileChooser fileDialog = fileChooser();
+            fileDialog.setCurrentDirectory(new File(txtPath.getText()));
+            if (fileDialog.showDialog(this, "Select") == JFileChooser.APPROVE_OPTION) {
+                setSdkPath(fileDialog.getSelectedFile().getAbsolutePath());
+            }
+            break;
+        case CMD_UPDATE:
+            ChangePlanner.Plan updates = planner().plan(tmdPackages.getUpdateChanges());
+            if (confirmPlan(updates, "These packages will be updated", "Update Packages")) {
+                applyChanges(updates);
+            }
+            break;
+        default:
+            break;
+        }
+    }
 
-                @Override
-                public Object getValueAt(int rowIndex, int columnIndex) {
-                    String key = rowIndex > removes.length - 1 ? installs[rowIndex - removes.length]
-                            : removes[rowIndex];
-                    PackageInfo info = tmdPackages.getData().get(key);
-                    String name = info.getName();
-                    String version = rowIndex > removes.length - 1 ? info.getVersionAvailable()
-                            : info.getVersionInstalled();
-                    String val = "";
-                    switch (columnIndex) {
-                    case 0:
-                        val = rowIndex > removes.length - 1 ? "Install" : "Remove";
-                        break;
-                    case 1:
-                        val = name;
-                        break;
-                    default:
-                        val = version;
-                    }
-                    return val;
-                }
+    /**
+     * Plans with the dependencies read from the repository manifests, if the
+     * packages were listed from them.
+     */
+    private ChangePlanner planner() {
+        RepositorySource repository = sdk.getRepository();
+        Map<String, List<String>> dependencies = repository == null ? Collections.<String, List<String>>emptyMap()
+                : repository.getDependencies();
+        return new ChangePlanner(tmdPackages, dependencies, InstallScheduler.defaultConcurrency());
+    }
 
-                @Override
-                public int getRowCount() {
-                    return removes.length + installs.length;
-                }
+    /**
+     * Shows the resolved plan, added dependencies and dropped changes included.
+     *
+     * @return true if the user confirmed and there is something to do
+     */
+    private boolean confirmPlan(ChangePlanner.Plan plan, String heading, String title) {
+        if (plan.isEmpty()) {
+            StringBuilder message = new StringBuilder("Nothing needs to be done.");
+            for (String note : plan.getNotes()) {
+                message.append('\n').append(note);
+            }
+            JOptionPane.showMessageDialog(this, message.toString(), title, JOptionPane.INFORMATION_MESSAGE);
+            return false;
+        }
+        List<ChangeSet.Change> changes = plan.getChanges();
+        TableModel tmdChanges = new AbstractTableModel() {
+            private static final long serialVersionUID = 1L;
+            String[] headers = { "Action", "Package", "Version", "Reason" };
 
-                @Override
-                public int getColumnCount() {
-                    return 3;
-                }
+            @Override
+            public int getRowCount() {
+                return changes.size();
+            }
 
-                @Override
-                public String getColumnName(int column) {
-                    return headers[column];
+            @Override
+            public int getColumnCount() {
+                return 4;
+            }
+
+            @Override
+            public Object getValueAt(int rowIndex, int columnIndex) {
+                ChangeSet.Change change = changes.get(rowIndex);
+                switch (columnIndex) {
+                case 0:
+                    switch (change.getAction()) {
+                    case REMOVE:
+                        return "Remove";
+                    case UPDATE:
+                        return "Update";
+                    default:
+                        return "Install";
+                    }
+                case 1:
+                    return change.getName();
+                case 2:
+                    return change.getAction() == ChangeSet.Action.UPDATE
+                            ? change.getVersionInstalled() + " → " + change.getVersionAvailable()
+                            : change.getVersion();
+                default:
+                    return plan.getReason(rowIndex);
                 }
-            };
-            tblChanges = new JTable(tmdChanges);
-            tblChanges.getColumnModel().getColumn(0).setPreferredWidth(90);
-            tblChanges.getColumnModel().getColumn(0).setMaxWidth(90);
-            scrChanges = new JScrollPane(tblChanges);
-            scrChanges.setPreferredSize(new Dimension(480, 160));
-            pnlConfirm.add(scrChanges, BorderLayout.CENTER);
-            pnlConfirm.add(lblConfirm, BorderLayout.NORTH);
-            pnlConfirm.setVisible(true);
-            answer = JOptionPane.showConfirmDialog(this, pnlConfirm, "Apply Changes", JOptionPane.OK_CANCEL_OPTION);
-            if (answer == JOptionPane.OK_OPTION) {
-                uiLock(true);
-                procSdk = new Thread(() -> {
-                    sdk.removePackages(removes);
-                    sdk.installPackages(installs);
-                    SwingUtilities.invokeLater(() -> {
-                        refreshPackages();
-                    });
-                });
-                procSdk.start();
             }
-            break;
-        case CMD_PATH:
-            JFileChooser fileDialog = new JFileChooser();
-            fileDialog.setCurrentDirectory(new File(txtPath.getText()));
-            fileDialog.setDialogTitle("Select Android SDK location...");
-            fileDialog.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-            fileDialog.setAcceptAllFileFilterUsed(false);
-            fileDialog.setFileFilter(new FileFilter() {
+
+            @Override
+            public String getColumnName(int column) {
+                return headers[column];
+            }
+        };
+        JTable tblChanges = new JTable(tmdChanges);
+        tblChanges.getColumnModel().getColumn(0).setPreferredWidth(70);
+        tblChanges.getColumnModel().getColumn(0).setMaxWidth(90);
+        tblChanges.getColumnModel().getColumn(2).setPreferredWidth(110);
+        JScrollPane scrChanges = new JScrollPane(tblChanges);
+        scrChanges.setPreferredSize(new Dimension(600, 180));
+        int launches = plan.getLaunchCount();
+        JLabel lblConfirm = new JLabel(heading + " in " + launches + " sdkmanager run" + (launches == 1 ? "" : "s")
+                + ":");
+        JPanel pnlConfirm = new JPanel(new BorderLayout());
+        pnlConfirm.add(lblConfirm, BorderLayout.NORTH);
+        pnlConfirm.add(scrChanges, BorderLayout.CENTER);
+        if (!plan.getNotes().isEmpty()) {
+            StringBuilder notes = new StringBuilder("<html>");
+            for (String note : plan.getNotes()) {
+                notes.append(note).append("<br>");
+            }
+            pnlConfirm.add(new JLabel(notes.append("</html>").toString()), BorderLayout.SOUTH);
+        }
+        return JOptionPane.showConfirmDialog(this, pnlConfirm, title,
+                JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION;
+    }
+
+    /**
+     * The chooser is slow to build, especially under the GTK look and feel, and
+     * most sessions never open it, so it is created on first use and kept.
+     */
+    private JFileChooser fileChooser() {
+        if (fileChooser == null) {
+            fileChooser = new JFileChooser();
+            fileChooser.setDialogTitle("Select Android SDK location...");
+            fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            fileChooser.setAcceptAllFileFilterUsed(false);
+            fileChooser.setFileFilter(new FileFilter() {
                 @Override
                 public String getDescription() {
                     return "Directory";
@@ -316,74 +609,94 @@ class AndroidGUI extends JFrame implements ActionListener {
                     return true;
                 }
             });
-            if (fileDialog.showDialog(this, "Select") == JFileChooser.APPROVE_OPTION) {
-                setSdkPath(fileDialog.getSelectedFile().getAbsolutePath());
-            }
-            break;
-        case CMD_UPDATE:
-            lblConfirm = new JLabel("These packages will be updated:");
-            pnlConfirm = new JPanel(new BorderLayout());
-            tmdChanges = new AbstractTableModel() {
-                private static final long serialVersionUID = 1L;
-                String[] headers = { "Package", "Installed", "Available" };
-
-                @Override
-                public int getRowCount() {
-                    return updates.length;
-                }
+        }
+        return fileChooser;
+    }
 
-                @Override
-                public int getColumnCount() {
-                    return 3;
-                }
+    /**
+     * Filters the table down to the packages matching the search field.
+     */
+    private void applyFilter() {
+        @SuppressWarnings("unchecked")
+        TableRowSorter<TableModel> sorter = (TableRowSorter<TableModel>) tblPackages.getRowSorter();
+        sorter.setRowFilter(packageFilter.setQuery(txtSearch.getText()) ? packageFilter : null);
+    }
 
-                @Override
-                public Object getValueAt(int rowIndex, int columnIndex) {
-                    String key = updates[rowIndex];
-                    PackageInfo info = tmdPackages.getData().get(key);
-                    switch (columnIndex) {
-                    case 0:
-                        return info.getName();
-                    case 1:
-                        return info.getVersionInstalled();
-                    case 2:
-                        return info.getVersionAvailable();
-                    default:
-                        return "";
+    /**
+     * Fills in the On disk column in the background. Sizes of packages that have
+     * not changed since the last measurement come from the disk usage cache.
+     * Applying changes stops the measurement rather than waiting behind it.
+     */
+    private void measureDiskUsage() {
+        Map<String, String> locations = tmdPackages.getInstalledLocations();
+        if (locations.isEmpty()) {
+            return;
+        }
+        AndroidSDK measured = sdk;
+        DiskUsage usage = new DiskUsage(measured.getSdkPath());
+        TASKS.submit("Measure disk usage", measured.getSdkPath(), SdkTaskExecutor.Access.BACKGROUND, () -> {
+            usage.measure(locations, (sizes) -> {
+                SwingUtilities.invokeLater(() -> {
+                    if (sdk == measured) {
+                        tmdPackages.setSizes(sizes);
                     }
-                }
+                });
+            });
+        }, usage::cancel);
+    }
 
-                @Override
-                public String getColumnName(int column) {
-                    return headers[column];
+    /**
+     * Follows changes other tools make to the SDK, replacing the watcher of the
+     * previous SDK root.
+     */
+    private void watchSdk(File sdkPath) {
+        if (watcher != null) {
+            // Closing waits for the watching thread, which may take a while
+            SdkWatcher old = watcher;
+            watcher = null;
+            Thread closing = new Thread(old::close, "sdk-watcher-close");
+            closing.setDaemon(true);
+            closing.start();
+        }
+        if (!sdkPath.isDirectory()) {
+            return;
+        }
+        SdkWatcher started = new SdkWatcher(sdkPath, (installed, removed) -> {
+            SwingUtilities.invokeLater(() -> {
+                if (sdk == null || !sdk.getSdkPath().equals(sdkPath)) {
+                    return;
                 }
+                for (PackageRow row : installed) {
+                    packageIndex.add(row);
+                }
+                tmdPackages.updatePackages(installed);
+                tmdPackages.markUninstalled(removed);
+                measureDiskUsage();
+            });
+        });
+        try {
+            started.start();
+            watcher = started;
+        } catch (IOException err) {
+            // Without a watcher the table is only as fresh as the last listing
+            System.err.println("Not watching " + sdkPath + ": " + err.getMessage());
+        }
+    }
 
-            };
-            tblChanges = new JTable(tmdChanges);
-            tblChanges.getColumnModel().getColumn(1).setPreferredWidth(90);
-            tblChanges.getColumnModel().getColumn(1).setMaxWidth(120);
-            tblChanges.getColumnModel().getColumn(2).setPreferredWidth(90);
-            tblChanges.getColumnModel().getColumn(2).setMaxWidth(120);
-            scrChanges = new JScrollPane(tblChanges);
-            scrChanges.setPreferredSize(new Dimension(480, 160));
-            pnlConfirm.add(scrChanges, BorderLayout.CENTER);
-            pnlConfirm.add(lblConfirm, BorderLayout.NORTH);
-            pnlConfirm.setVisible(true);
-            answer = JOptionPane.showConfirmDialog(this, pnlConfirm, "Update Packages", JOptionPane.OK_CANCEL_OPTION);
-            if (answer == JOptionPane.OK_OPTION) {
-                uiLock(true);
-                procSdk = new Thread(() -> {
-                    sdk.installPackages(updates);
-                    SwingUtilities.invokeLater(() -> {
-                        refreshPackages();
-                    });
-                });
-                procSdk.start();
-            }
-            break;
-        default:
-            break;
+    /**
+     * Lists the running and queued SDK operations in the Cancel button's tooltip.
+     */
+    private void showTasks(List<SdkTaskExecutor.Task> tasks) {
+        if (tasks.isEmpty()) {
+            btnCancel.setToolTipText(null);
+            return;
+        }
+        StringBuilder text = new StringBuilder("<html>");
+        for (SdkTaskExecutor.Task task : tasks) {
+            text.append(task.getState() == SdkTaskExecutor.State.RUNNING ? "Running: " : "Queued: ")
+                    .append(task.getName()).append("<br>");
         }
+        btnCancel.setToolTipText(text.append("</html>").toString());
     }
 
     private void initComponents() {
@@ -395,7 +708,52 @@ class AndroidGUI extends JFrame implements ActionListener {
         tblPackages.setPreferredScrollableViewportSize(new Dimension(200, 70));
         tblPackages.setFillsViewportHeight(true);
         tblPackages.setAutoCreateRowSorter(true);
+        tblPackages.setDefaultRenderer(Long.class, new DefaultTableCellRenderer() {
+            private static final long serialVersionUID = 1L;
+
+            {
+                setHorizontalAlignment(SwingConstants.RIGHT);
+            }
+
+            @Override
+            protected void setValue(Object value) {
+                setText(value == null ? "" : DiskUsage.format((Long) value));
+            }
+        });
+        tblPackages.getColumnModel().getColumn(0).setMaxWidth(32);
+        new ColumnSizer(tblPackages, new int[] { 1, 2, 3, 4, 5 }, 480) {
+            @Override
+            protected String text(int column, Object value) {
+                return value instanceof Long ? DiskUsage.format((Long) value) : super.text(column, value);
+            }
+        }.start();
+        tmdPackages.addTableModelListener(new TableModelListener() {
+            @Override
+            public void tableChanged(TableModelEvent e) {
+                if (tmdPackages.getRowCount() > 0) {
+                    startup.mark(StartupTimer.Phase.FIRST_ROW);
+                    tmdPackages.removeTableModelListener(this);
+                }
+            }
+        });
         JLabel lblPath = new JLabel("SDK Path: ");
+        JLabel lblSearch = new JLabel("Search: ");
+        txtSearch.setToolTipText("Words or prefixes of a package name or id, e.g. \"sys 34 x86\"");
+        txtSearch.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyFilter();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
         txtPath.addFocusListener(new FocusListener() {
             private String originalContent;
 
@@ -417,17 +775,36 @@ class AndroidGUI extends JFrame implements ActionListener {
         btnApply.addActionListener(this);
         btnUpdate.setActionCommand(CMD_UPDATE);
         btnUpdate.addActionListener(this);
+        btnCancel.setActionCommand(CMD_CANCEL);
+        btnCancel.addActionListener(this);
+        btnCancel.setEnabled(false);
+        btnLog.setActionCommand(CMD_LOG);
+        btnLog.addActionListener(this);
+        btnLog.setToolTipText("Output of the sdkmanager runs of this session");
+        // The metrics dialog is for troubleshooting, so it has a shortcut but no button
+        getRootPane().registerKeyboardAction(this, CMD_METRICS,
+                KeyStroke.getKeyStroke(KeyEvent.VK_M, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK),
+                JComponent.WHEN_IN_FOCUSED_WINDOW);
+        TASKS.addListener((tasks) -> {
+            SwingUtilities.invokeLater(() -> {
+                showTasks(tasks);
+            });
+        });
         prgInstall.setMinimum(0);
         prgInstall.setMaximum(100);
         contentPane.setLayout(layout);
         contentPane.add(lblPath);
         contentPane.add(txtPath);
         contentPane.add(btnPath);
+        contentPane.add(lblSearch);
+        contentPane.add(txtSearch);
         contentPane.add(scrollPane);
         contentPane.add(lblStatus);
         contentPane.add(prgInstall);
         contentPane.add(btnApply);
         contentPane.add(btnUpdate);
+        contentPane.add(btnCancel);
+        contentPane.add(btnLog);
         // First Row (lblPath, txtPath, btnPath)
         layout.putConstraint(SpringLayout.WEST, lblPath, 5, SpringLayout.WEST, contentPane);
         layout.putConstraint(SpringLayout.NORTH, lblPath, 5, SpringLayout.NORTH, contentPane);
@@ -439,16 +816,30 @@ class AndroidGUI extends JFrame implements ActionListener {
         layout.putConstraint(SpringLayout.EAST, btnPath, -5, SpringLayout.EAST, contentPane);
         // -- Common anchor for first row is btnPath
         layout.putConstraint(SpringLayout.NORTH, btnPath, 5, SpringLayout.NORTH, contentPane);
-        // Second Row (scrollPane)
+        // Second Row (lblSearch, txtSearch)
+        layout.putConstraint(SpringLayout.WEST, lblSearch, 0, SpringLayout.WEST, lblPath);
+        layout.putConstraint(SpringLayout.EAST, lblSearch, 0, SpringLayout.EAST, lblPath);
+        layout.putConstraint(SpringLayout.NORTH, lblSearch, 0, SpringLayout.NORTH, txtSearch);
+        layout.putConstraint(SpringLayout.SOUTH, lblSearch, 0, SpringLayout.SOUTH, txtSearch);
+        layout.putConstraint(SpringLayout.WEST, txtSearch, 0, SpringLayout.WEST, txtPath);
+        layout.putConstraint(SpringLayout.EAST, txtSearch, 0, SpringLayout.EAST, btnPath);
+        layout.putConstraint(SpringLayout.NORTH, txtSearch, 4, SpringLayout.SOUTH, btnPath);
+        // Third Row (scrollPane)
         layout.putConstraint(SpringLayout.WEST, scrollPane, 5, SpringLayout.WEST, contentPane);
         layout.putConstraint(SpringLayout.EAST, scrollPane, -5, SpringLayout.EAST, contentPane);
-        layout.putConstraint(SpringLayout.NORTH, scrollPane, 5, SpringLayout.SOUTH, lblPath);
+        layout.putConstraint(SpringLayout.NORTH, scrollPane, 5, SpringLayout.SOUTH, txtSearch);
         layout.putConstraint(SpringLayout.SOUTH, scrollPane, -4, SpringLayout.NORTH, btnApply);
-        // Third Row (prgInstall, btnApply)
-        layout.putConstraint(SpringLayout.EAST, prgInstall, -4, SpringLayout.WEST, btnUpdate);
+        // Fourth Row (prgInstall, btnLog, btnCancel, btnUpdate, btnApply)
+        layout.putConstraint(SpringLayout.EAST, prgInstall, -4, SpringLayout.WEST, btnLog);
         layout.putConstraint(SpringLayout.WEST, prgInstall, 5, SpringLayout.WEST, contentPane);
         layout.putConstraint(SpringLayout.NORTH, prgInstall, 0, SpringLayout.NORTH, btnApply);
         layout.putConstraint(SpringLayout.SOUTH, prgInstall, 0, SpringLayout.SOUTH, btnApply);
+        layout.putConstraint(SpringLayout.EAST, btnLog, -4, SpringLayout.WEST, btnCancel);
+        layout.putConstraint(SpringLayout.NORTH, btnLog, 0, SpringLayout.NORTH, btnApply);
+        layout.putConstraint(SpringLayout.SOUTH, btnLog, 0, SpringLayout.SOUTH, btnApply);
+        layout.putConstraint(SpringLayout.EAST, btnCancel, -4, SpringLayout.WEST, btnUpdate);
+        layout.putConstraint(SpringLayout.NORTH, btnCancel, 0, SpringLayout.NORTH, btnApply);
+        layout.putConstraint(SpringLayout.SOUTH, btnCancel, 0, SpringLayout.SOUTH, btnApply);
         layout.putConstraint(SpringLayout.EAST, btnUpdate, -4, SpringLayout.WEST, btnApply);
         layout.putConstraint(SpringLayout.NORTH, btnUpdate, 0, SpringLayout.NORTH, btnApply);
         layout.putConstraint(SpringLayout.SOUTH, btnUpdate, 0, SpringLayout.SOUTH, btnApply);
@@ -0,0 +1,268 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import id.dhipo.TablePackagesModel.PackageInfo;
+import id.dhipo.sdkbridge.InstallScheduler;
+
+/**
+ * Turns the marked changes into the plan that is shown for confirmation and
+ * then run. The planner:
+ * <ul>
+ * <li>drops removals of packages that are not installed and installs of
+ * packages that are already up to date,</li>
+ * <li>adds the missing dependencies of every install, as read from the
+ * repository manifests, ahead of the packages that need them,</li>
+ * <li>keeps a package marked for removal if something that stays installed,
+ * or is about to be, depends on it,</li>
+ * <li>and packs the installs into as few sdkmanager launches as the install
+ * concurrency allows, keeping each package together with its dependencies.</li>
+ * </ul>
+ * Without repository metadata no dependencies are known and sdkmanager resolves
+ * them itself, as before.
+ */
+public class ChangePlanner {
+
+    /**
+     * The resolved plan. Immutable.
+     */
+    public static final class Plan {
+        private final List<ChangeSet.Change> changes;
+        private final List<String> reasons;
+        private final List<String> notes;
+        private final String[] removes;
+        private final List<String[]> groups;
+        private final List<String[]> jobs;
+
+        Plan(List<ChangeSet.Change> changes, List<String> reasons, List<String> notes, String[] removes,
+                List<String[]> groups, List<String[]> jobs) {
+            this.changes = Collections.unmodifiableList(changes);
+            this.reasons = Collections.unmodifiableList(reasons);
+            this.notes = Collections.unmodifiableList(notes);
+            this.removes = removes;
+            this.groups = Collections.unmodifiableList(groups);
+            this.jobs = Collections.unmodifiableList(jobs);
+        }
+
+        /**
+         * @return every change that will be made, removals first, then installs
+         *         with dependencies ahead of the packages that need them
+         */
+        public List<ChangeSet.Change> getChanges() {
+            return changes;
+        }
+
+        /**
+         * @return why the change at the same index is in the plan
+         */
+        public String getReason(int index) {
+            return reasons.get(index);
+        }
+
+        /**
+         * @return the marked changes that were dropped or altered, and why
+         */
+        public List<String> getNotes() {
+            return notes;
+        }
+
+        public boolean isEmpty() {
+            return changes.isEmpty();
+        }
+
+        public String[] getRemoves() {
+            return removes.clone();
+        }
+
+        /**
+         * @return the packages to install, each group a package and the
+         *         dependencies it needs, for {@link InstallScheduler#apply}
+         */
+        public List<String[]> getGroups() {
+            return groups;
+        }
+
+        /**
+         * @return how many times sdkmanager will be launched
+         */
+        public int getLaunchCount() {
+            return (removes.length > 0 ? 1 : 0) + jobs.size();
+        }
+    }
+
+    private final TablePackagesModel model;
+    private final Map<String, List<String>> dependencies;
+    private final int concurrency;
+
+    /**
+     * @param dependencies package path to the paths it depends on, e.g. from
+     *                     {@link id.dhipo.sdkbridge.RepositorySource#getDependencies()}
+     */
+    public ChangePlanner(TablePackagesModel model, Map<String, List<String>> dependencies, int concurrency) {
+        this.model = model;
+        this.dependencies = dependencies;
+        this.concurrency = concurrency;
+    }
+
+    public Plan plan(ChangeSet marked) {
+        List<String> notes = new ArrayList<String>();
+        LinkedHashMap<String, ChangeSet.Change> removes = new LinkedHashMap<String, ChangeSet.Change>();
+        List<ChangeSet.Change> requested = new ArrayList<ChangeSet.Change>();
+        for (ChangeSet.Change change : marked.getChanges()) {
+            PackageInfo info = model.getPackage(change.getId());
+            boolean installed = info != null && info.isInstalled();
+            if (change.getAction() == ChangeSet.Action.REMOVE) {
+                if (installed) {
+                    removes.put(change.getId(), change);
+                } else {
+                    notes.add(change.getName() + " is not installed, nothing to remove");
+                }
+            } else if (installed && info.isLatest()) {
+                notes.add(change.getName() + " is already up to date");
+            } else {
+                requested.add(change);
+            }
+        }
+
+        // Installs in dependency order, each with the reason it is there and the
+        // package it was pulled in for
+        LinkedHashMap<String, ChangeSet.Change> installs = new LinkedHashMap<String, ChangeSet.Change>();
+        Map<String, String> reasons = new HashMap<String, String>();
+        Map<String, String> roots = new HashMap<String, String>();
+        for (ChangeSet.Change change : requested) {
+            if (installs.containsKey(change.getId())) {
+                // Already pulled in as a dependency of an earlier install
+                installs.put(change.getId(), change);
+                reasons.put(change.getId(), "Marked");
+                continue;
+            }
+            addInstall(change, "Marked", change.getId(), installs, reasons, roots, removes, notes,
+                    new HashSet<String>());
+        }
+        keepDependedOn(removes, installs, notes);
+
+        List<ChangeSet.Change> changes = new ArrayList<ChangeSet.Change>(removes.size() + installs.size());
+        List<String> changeReasons = new ArrayList<String>(removes.size() + installs.size());
+        for (ChangeSet.Change change : removes.values()) {
+            changes.add(change);
+            changeReasons.add("Marked");
+        }
+        Map<String, List<String>> grouped = new LinkedHashMap<String, List<String>>();
+        for (ChangeSet.Change change : installs.values()) {
+            changes.add(change);
+            changeReasons.add(reasons.get(change.getId()));
+            grouped.computeIfAbsent(find(roots, change.getId()), (root) -> new ArrayList<String>())
+                    .add(change.getId());
+        }
+        List<String[]> groups = new ArrayList<String[]>(grouped.size());
+        for (List<String> group : grouped.values()) {
+            groups.add(group.toArray(new String[0]));
+        }
+        return new Plan(changes, changeReasons, notes, removes.keySet().toArray(new String[0]), groups,
+                InstallScheduler.packJobs(groups, concurrency));
+    }
+
+    /**
+     * Adds an install after the dependencies it is missing, joining its group
+     * with theirs.
+     */
+    private void addInstall(ChangeSet.Change change, String reason, String root,
+            LinkedHashMap<String, ChangeSet.Change> installs, Map<String, String> reasons, Map<String, String> roots,
+            Map<String, ChangeSet.Change> removes, List<String> notes, Set<String> visiting) {
+        String id = change.getId();
+        visiting.add(id);
+        union(roots, root, id);
+        for (String dependency : dependencies.getOrDefault(id, Collections.<String>emptyList())) {
+            if (installs.containsKey(dependency) || visiting.contains(dependency)) {
+                union(roots, id, dependency);
+                continue;
+            }
+            PackageInfo info = model.getPackage(dependency);
+            if (info != null && info.isInstalled()) {
+                ChangeSet.Change removal = removes.remove(dependency);
+                if (removal != null) {
+                    notes.add("Keeping " + removal.getName() + ", " + change.getName() + " depends on it");
+                }
+                continue;
+            }
+            ChangeSet.Change needed = info == null
+                    ? new ChangeSet.Change(ChangeSet.Action.INSTALL, dependency, dependency, "", "")
+                    : new ChangeSet.Change(ChangeSet.Action.INSTALL, dependency, info.getName(), "",
+                            info.getVersionAvailable());
+            addInstall(needed, "Needed by " + change.getName(), id, installs, reasons, roots, removes, notes,
+                    visiting);
+        }
+        installs.put(id, change);
+        reasons.putIfAbsent(id, reason);
+    }
+
+    /**
+     * Drops removals of packages that a package staying installed depends on,
+     * until none are left.
+     */
+    private void keepDependedOn(Map<String, ChangeSet.Change> removes, Map<String, ChangeSet.Change> installs,
+            List<String> notes) {
+        boolean dropped = true;
+        while (dropped && !removes.isEmpty()) {
+            dropped = false;
+            for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+                String dependent = entry.getKey();
+                PackageInfo info = model.getPackage(dependent);
+                boolean stays = installs.containsKey(dependent)
+                        || (info != null && info.isInstalled() && !removes.containsKey(dependent));
+                if (!stays) {
+                    continue;
+                }
+                for (String dependency : entry.getValue()) {
+                    ChangeSet.Change removal = removes.remove(dependency);
+                    if (removal != null) {
+                        String name = info == null ? dependent : info.getName();
+                        notes.add("Keeping " + removal.getName() + ", " + name + " depends on it");
+                        dropped = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static String find(Map<String, String> roots, String id) {
+        String root = id;
+        String parent;
+        while ((parent = roots.get(root)) != null && !parent.equals(root)) {
+            root = parent;
+        }
+        return root;
+    }
+
+    private static void union(Map<String, String> roots, String a, String b) {
+        String rootA = find(roots, a);
+        String rootB = find(roots, b);
+        if (!rootA.equals(rootB)) {
+            roots.put(rootB, rootA);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the changes to apply, taken when a confirm dialog
+ * opens. Each change carries the name and versions shown in the dialog, so
+ * painting the dialog never goes back to the package table.
+ */
+public final class ChangeSet {
+
+    public enum Action {
+        REMOVE, INSTALL, UPDATE
+    }
+
+    public static final class Change {
+        private final Action action;
+        private final String id;
+        private final String name;
+        private final String versionInstalled;
+        private final String versionAvailable;
+
+        public Change(Action action, String id, String name, String versionInstalled, String versionAvailable) {
+            this.action = action;
+            this.id = id;
+            this.name = name;
+            this.versionInstalled = versionInstalled;
+            this.versionAvailable = versionAvailable;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getVersionInstalled() {
+            return versionInstalled;
+        }
+
+        public String getVersionAvailable() {
+            return versionAvailable;
+        }
+
+        /**
+         * @return the version the change is about: the installed one for a removal,
+         *         the available one otherwise
+         */
+        public String getVersion() {
+            return action == Action.REMOVE ? versionInstalled : versionAvailable;
+        }
+    }
+
+    private final List<Change> changes;
+    private final String[] removes;
+    private final String[] installs;
+
+    /**
+     * @param changes removals first, then installs and updates
+     */
+    public ChangeSet(List<Change> changes) {
+        this.changes = Collections.unmodifiableList(new ArrayList<Change>(changes));
+        ArrayList<String> removeIds = new ArrayList<String>();
+        ArrayList<String> installIds = new ArrayList<String>();
+        for (Change change : this.changes) {
+            (change.action == Action.REMOVE ? removeIds : installIds).add(change.id);
+        }
+        this.removes = removeIds.toArray(new String[0]);
+        this.installs = installIds.toArray(new String[0]);
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public Change get(int index) {
+        return changes.get(index);
+    }
+
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return the ids of the packages to remove
+     */
+    public String[] getRemoves() {
+        return removes.clone();
+    }
+
+    /**
+     * @return the ids of the packages to install or update
+     */
+    public String[] getInstalls() {
+        return installs.clone();
+    }
+}
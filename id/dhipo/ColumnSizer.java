@@ -0,0 +1,238 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import java.awt.FontMetrics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
+import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
+
+/**
+ * Sizes table columns to their widest text without ever measuring the whole
+ * table at once. Every model event hands the values of the rows it touched to
+ * a background thread, which measures them with the table's cached
+ * {@link FontMetrics} and keeps a running maximum per column. While there is
+ * measuring to do, a timer applies the maxima a few times per second, and only
+ * when they changed; it stops once the measuring has caught up.
+ * <p>
+ * Widths only grow while rows come and go; they start over when the model is
+ * cleared or replaced.
+ */
+public class ColumnSizer implements TableModelListener, ActionListener {
+
+    public static final int DEFAULT_INTERVAL_MS = 250;
+    // Rows whose values are copied per trip to the EDT
+    private static final int CHUNK = 1024;
+    // Renderer insets and the grid line
+    private static final int PADDING = 12;
+
+    private final JTable table;
+    private final int[] columns;
+    private final int maxWidth;
+    private final AtomicIntegerArray widths;
+    private final int[] applied;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor((task) -> {
+        Thread thread = new Thread(task, "column-sizer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Timer timer;
+    private volatile FontMetrics metrics;
+    // Tasks handed to the worker and not finished yet
+    private final AtomicInteger queued = new AtomicInteger();
+    // Confined to the EDT: chunks posted to later trips, and whether start() was called
+    private int chunks;
+    private boolean following;
+
+    /**
+     * @param columns the model indices of the columns to size
+     * @param maxWidth the widest a column is made, however long its text
+     */
+    public ColumnSizer(JTable table, int[] columns, int maxWidth) {
+        this(table, columns, maxWidth, DEFAULT_INTERVAL_MS);
+    }
+
+    public ColumnSizer(JTable table, int[] columns, int maxWidth, int intervalMs) {
+        this.table = table;
+        this.columns = columns.clone();
+        this.maxWidth = maxWidth;
+        this.widths = new AtomicIntegerArray(columns.length);
+        this.applied = new int[columns.length];
+        this.timer = new Timer(intervalMs, this);
+        table.addPropertyChangeListener("font", (event) -> {
+            metrics = table.getFontMetrics(table.getFont());
+            remeasure();
+        });
+        metrics = table.getFontMetrics(table.getFont());
+    }
+
+    /**
+     * Starts following the table's model. Must be called on the event dispatch
+     * thread.
+     */
+    public void start() {
+        following = true;
+        table.getModel().addTableModelListener(this);
+        remeasure();
+    }
+
+    public void stop() {
+        following = false;
+        timer.stop();
+        table.getModel().removeTableModelListener(this);
+    }
+
+    /**
+     * The text a value is shown as. Called on the background thread.
+     */
+    protected String text(int column, Object value) {
+        return String.valueOf(value);
+    }
+
+    @Override
+    public void tableChanged(TableModelEvent e) {
+        if (e.getType() == TableModelEvent.DELETE) {
+            return;
+        }
+        if (e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getLastRow() == Integer.MAX_VALUE) {
+            remeasure();
+            return;
+        }
+        measureFrom(e.getFirstRow(), e.getLastRow(), generation.get());
+    }
+
+    /**
+     * Forgets the maxima and measures every row again.
+     */
+    private void remeasure() {
+        int current = generation.incrementAndGet();
+        FontMetrics headerMetrics = table.getTableHeader() == null ? metrics
+                : table.getFontMetrics(table.getTableHeader().getFont());
+        String[] headers = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            headers[i] = table.getModel().getColumnName(columns[i]);
+        }
+        submit(() -> {
+            for (int i = 0; i < headers.length; i++) {
+                widths.set(i, headerMetrics.stringWidth(headers[i]));
+            }
+        });
+        measureFrom(0, Integer.MAX_VALUE, current);
+    }
+
+    /**
+     * Measures rows first to last, a chunk now and the rest in later trips to the
+     * EDT.
+     */
+    private void measureFrom(int first, int last, int current) {
+        TableModel model = table.getModel();
+        if (current != generation.get() || first >= model.getRowCount()) {
+            return;
+        }
+        int end = Math.min(Math.min(last, model.getRowCount() - 1), first + CHUNK - 1);
+        measure(model, first, end, current);
+        if (end < last) {
+            chunks++;
+            SwingUtilities.invokeLater(() -> {
+                chunks--;
+                measureFrom(end + 1, last, current);
+            });
+        }
+    }
+
+    /**
+     * Copies the values of the rows on the EDT and measures them on the worker.
+     */
+    private void measure(TableModel model, int first, int last, int current) {
+        if (first < 0 || last < first) {
+            return;
+        }
+        Object[][] values = new Object[columns.length][last - first + 1];
+        for (int i = 0; i < columns.length; i++) {
+            for (int row = first; row <= last; row++) {
+                values[i][row - first] = model.getValueAt(row, columns[i]);
+            }
+        }
+        submit(() -> {
+            FontMetrics fontMetrics = metrics;
+            for (int i = 0; i < values.length; i++) {
+                int widest = 0;
+                for (Object value : values[i]) {
+                    if (value != null) {
+                        widest = Math.max(widest, fontMetrics.stringWidth(text(columns[i], value)));
+                    }
+                }
+                if (current != generation.get()) {
+                    return;
+                }
+                widths.accumulateAndGet(i, widest, Math::max);
+            }
+        });
+    }
+
+    /**
+     * Hands a task to the worker and makes sure the timer runs until it is done.
+     */
+    private void submit(Runnable task) {
+        queued.incrementAndGet();
+        if (following && !timer.isRunning()) {
+            timer.start();
+        }
+        worker.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                queued.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Applies the widths that changed since the last tick, and stops the timer
+     * when nothing is left to measure.
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        // Read before the widths: a finished task's maximum is then already visible
+        boolean idle = queued.get() == 0 && chunks == 0;
+        TableColumnModel columnModel = table.getColumnModel();
+        for (int i = 0; i < columns.length; i++) {
+            int width = Math.min(widths.get(i) + PADDING, maxWidth);
+            int view = table.convertColumnIndexToView(columns[i]);
+            if (width != applied[i] && view >= 0) {
+                columnModel.getColumn(view).setPreferredWidth(width);
+                applied[i] = width;
+            }
+        }
+        if (idle) {
+            timer.stop();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import javax.swing.AbstractListModel;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.Timer;
+
+import id.dhipo.sdkbridge.OperationLog;
+
+/**
+ * Shows an {@link OperationLog}. The list reads lines straight from the log
+ * and has a fixed cell height, so only the lines in view are ever rendered,
+ * however many the log holds. New lines are picked up four times a second, and
+ * the view follows them while it is scrolled to the bottom.
+ */
+public class LogDialog extends JDialog implements ActionListener {
+
+    private static final long serialVersionUID = 1L;
+    private static final String CMD_EXPORT = "EXPORT";
+    private static final String CMD_CLEAR = "CLEAR";
+    private static final String CMD_CLOSE = "CLOSE";
+    private static final int VISIBLE_COLUMNS = 240;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private final OperationLog log;
+    private final LogModel lstModel = new LogModel();
+    private final JList<OperationLog.Entry> lstLog = new JList<OperationLog.Entry>(lstModel);
+    private final JScrollPane scrLog = new JScrollPane(lstLog);
+    private final Timer timer = new Timer(250, (e) -> lstModel.sync());
+    private JFileChooser fileChooser;
+
+    /**
+     * Presents the lines the log held at the last sync. Evicted lines are
+     * reported as removed from the top, new ones as added at the bottom.
+     */
+    private class LogModel extends AbstractListModel<OperationLog.Entry> {
+        private static final long serialVersionUID = 1L;
+        private long first;
+        private int size;
+
+        void sync() {
+            long logFirst = log.getFirstSequence();
+            long logEnd = log.getEndSequence();
+            JScrollBar bar = scrLog.getVerticalScrollBar();
+            boolean atBottom = bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum();
+            long end = first + size;
+            if (logFirst >= end) {
+                // Everything shown is gone
+                if (size > 0) {
+                    int removed = size;
+                    size = 0;
+                    fireIntervalRemoved(this, 0, removed - 1);
+                }
+                first = logFirst;
+                end = logFirst;
+            } else if (logFirst > first) {
+                int removed = (int) (logFirst - first);
+                first = logFirst;
+                size -= removed;
+                fireIntervalRemoved(this, 0, removed - 1);
+            }
+            if (logEnd > end) {
+                int added = (int) (logEnd - end);
+                size += added;
+                fireIntervalAdded(this, size - added, size - 1);
+                if (atBottom) {
+                    lstLog.ensureIndexIsVisible(size - 1);
+                }
+            }
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public OperationLog.Entry getElementAt(int index) {
+            // Null once evicted; the renderer shows an empty line until the next sync
+            return log.get(first + index);
+        }
+    }
+
+    public LogDialog(Frame owner, OperationLog log) {
+        super(owner, "sdkmanager Log", false);
+        this.log = log;
+        lstLog.setFont(new Font(Font.MONOSPACED, Font.PLAIN, lstLog.getFont().getSize()));
+        // With both dimensions fixed the list never measures lines outside the view;
+        // longer lines are cut and shown whole in the tooltip
+        lstLog.setFixedCellHeight(lstLog.getFontMetrics(lstLog.getFont()).getHeight() + 2);
+        lstLog.setFixedCellWidth(lstLog.getFontMetrics(lstLog.getFont()).charWidth('m') * VISIBLE_COLUMNS);
+        lstLog.setCellRenderer(new DefaultListCellRenderer() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                    boolean isSelected, boolean cellHasFocus) {
+                OperationLog.Entry entry = (OperationLog.Entry) value;
+                String text = entry == null ? ""
+                        : TIME.format(Instant.ofEpochMilli(entry.getTime())) + "  [" + entry.getOperation() + "]  "
+                                + entry.getLine();
+                super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+                setToolTipText(text.length() > VISIBLE_COLUMNS ? entry.getLine() : null);
+                return this;
+            }
+        });
+        scrLog.setPreferredSize(new Dimension(720, 360));
+        JButton btnExport = new JButton("Export…");
+        JButton btnClear = new JButton("Clear");
+        JButton btnClose = new JButton("Close");
+        btnExport.setActionCommand(CMD_EXPORT);
+        btnExport.addActionListener(this);
+        btnClear.setActionCommand(CMD_CLEAR);
+        btnClear.addActionListener(this);
+        btnClose.setActionCommand(CMD_CLOSE);
+        btnClose.addActionListener(this);
+        JPanel pnlButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        pnlButtons.add(btnExport);
+        pnlButtons.add(btnClear);
+        pnlButtons.add(btnClose);
+        getContentPane().add(scrLog, BorderLayout.CENTER);
+        getContentPane().add(pnlButtons, BorderLayout.SOUTH);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                timer.start();
+            }
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timer.stop();
+            }
+        });
+        setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        lstModel.sync();
+        pack();
+        setLocationRelativeTo(owner);
+        if (lstModel.getSize() > 0) {
+            lstLog.ensureIndexIsVisible(lstModel.getSize() - 1);
+        }
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        switch (e.getActionCommand()) {
+        case CMD_EXPORT:
+            if (fileChooser == null) {
+                fileChooser = new JFileChooser();
+                fileChooser.setDialogTitle("Export log");
+                fileChooser.setSelectedFile(new File("sdkmanager.log"));
+            }
+            if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    log.export(fileChooser.getSelectedFile().toPath());
+                } catch (IOException err) {
+                    JOptionPane.showMessageDialog(this, "Could not export the log: " + err.getMessage(),
+                            "Export Log", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+            break;
+        case CMD_CLEAR:
+            log.clear();
+            lstModel.sync();
+            break;
+        case CMD_CLOSE:
+            dispose();
+            break;
+        default:
+            break;
+        }
+    }
+}
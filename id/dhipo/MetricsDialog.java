@@ -0,0 +1,172 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import id.dhipo.sdkbridge.SdkMetrics;
+
+/**
+ * Shows the {@link SdkMetrics} counters, refreshed once a second while the
+ * dialog is open, and saves the flight recording to a file for bug reports.
+ */
+public class MetricsDialog extends JDialog implements ActionListener {
+
+    private static final long serialVersionUID = 1L;
+    private static final String CMD_RECORD = "RECORD";
+    private static final String CMD_SAVE = "SAVE";
+    private static final String CMD_CLOSE = "CLOSE";
+
+    private final List<String> names = new ArrayList<String>();
+    private final List<String> values = new ArrayList<String>();
+    private final AbstractTableModel tmdMetrics = new AbstractTableModel() {
+        private static final long serialVersionUID = 1L;
+        String[] headers = { "Metric", "Value" };
+
+        @Override
+        public int getRowCount() {
+            return names.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 2;
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            return columnIndex == 0 ? names.get(rowIndex) : values.get(rowIndex);
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return headers[column];
+        }
+    };
+    private final JButton btnRecord = new JButton("Start Recording");
+    private final JButton btnSave = new JButton("Save Recording…");
+    private final Timer timer = new Timer(1000, (e) -> refresh());
+
+    public MetricsDialog(Frame owner) {
+        super(owner, "Metrics", false);
+        JTable tblMetrics = new JTable(tmdMetrics);
+        tblMetrics.getColumnModel().getColumn(1).setPreferredWidth(140);
+        JScrollPane scrMetrics = new JScrollPane(tblMetrics);
+        scrMetrics.setPreferredSize(new Dimension(420, 280));
+        JButton btnClose = new JButton("Close");
+        btnRecord.setActionCommand(CMD_RECORD);
+        btnRecord.addActionListener(this);
+        btnSave.setActionCommand(CMD_SAVE);
+        btnSave.addActionListener(this);
+        btnClose.setActionCommand(CMD_CLOSE);
+        btnClose.addActionListener(this);
+        JPanel pnlButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        pnlButtons.add(btnRecord);
+        pnlButtons.add(btnSave);
+        pnlButtons.add(btnClose);
+        getContentPane().add(scrMetrics, BorderLayout.CENTER);
+        getContentPane().add(pnlButtons, BorderLayout.SOUTH);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                timer.start();
+            }
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timer.stop();
+            }
+        });
+        setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        refresh();
+        pack();
+        setLocationRelativeTo(owner);
+    }
+
+    private void refresh() {
+        Map<String, String> snapshot = SdkMetrics.snapshot();
+        boolean grown = snapshot.size() != names.size();
+        names.clear();
+        values.clear();
+        for (Map.Entry<String, String> metric : snapshot.entrySet()) {
+            names.add(metric.getKey());
+            values.add(metric.getValue());
+        }
+        if (grown) {
+            tmdMetrics.fireTableDataChanged();
+        } else {
+            tmdMetrics.fireTableRowsUpdated(0, names.size() - 1);
+        }
+        boolean available = SdkMetrics.isRecordingAvailable();
+        btnRecord.setEnabled(available && !SdkMetrics.isRecording());
+        btnSave.setEnabled(SdkMetrics.isRecording());
+        if (!available) {
+            btnRecord.setToolTipText("Flight Recorder is not available in this JVM");
+        }
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        switch (e.getActionCommand()) {
+        case CMD_RECORD:
+            SdkMetrics.startRecording();
+            refresh();
+            break;
+        case CMD_SAVE:
+            JFileChooser fileDialog = new JFileChooser();
+            fileDialog.setDialogTitle("Save recording");
+            fileDialog.setSelectedFile(new File("androidgui.jfr"));
+            if (fileDialog.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    SdkMetrics.dumpRecording(fileDialog.getSelectedFile().toPath());
+                } catch (IOException err) {
+                    JOptionPane.showMessageDialog(this, "Could not save the recording: " + err.getMessage(),
+                            "Save Recording", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+            break;
+        case CMD_CLOSE:
+            dispose();
+            break;
+        default:
+            break;
+        }
+    }
+}
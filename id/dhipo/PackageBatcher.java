@@ -0,0 +1,154 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import java.util.ArrayList;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import id.dhipo.sdkbridge.PackageRow;
+import id.dhipo.sdkbridge.SdkListener;
+import id.dhipo.sdkbridge.SdkMetrics;
+
+/**
+ * Collects package rows on the sdkmanager reader thread and hands them to the
+ * event dispatch thread in chunks, so a full listing costs a few dozen
+ * runnables instead of one per line. Any other event flushes the queue first,
+ * so the EDT sees rows and status changes in their original order.
+ */
+public class PackageBatcher implements SdkListener {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_INTERVAL_MS = 40;
+
+    private final TablePackagesModel model;
+    private final int batchSize;
+    private final long intervalNanos;
+    // Posts a partial chunk once the interval is up, even if no further row arrives
+    private final Timer timer;
+    private ArrayList<PackageRow> pending;
+    private long firstPending;
+    private volatile boolean discarded;
+
+    public PackageBatcher(TablePackagesModel model) {
+        this(model, DEFAULT_BATCH_SIZE, DEFAULT_INTERVAL_MS);
+    }
+
+    public PackageBatcher(TablePackagesModel model, int batchSize, long intervalMs) {
+        this.model = model;
+        this.batchSize = batchSize;
+        this.intervalNanos = intervalMs * 1000000L;
+        this.pending = new ArrayList<PackageRow>(batchSize);
+        this.timer = new Timer((int) intervalMs, e -> flush());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Queues a row. The chunk is posted once it is full or once its oldest row
+     * has waited longer than the flush interval, whether or not more rows follow.
+     */
+    @Override
+    public synchronized void onPackage(PackageRow row) {
+        if (discarded) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (pending.isEmpty()) {
+            firstPending = now;
+            timer.restart();
+        }
+        pending.add(row);
+        if (pending.size() >= batchSize || now - firstPending >= intervalNanos) {
+            flush();
+        }
+    }
+
+    @Override
+    public void onProgress(int percent) {
+        flush();
+    }
+
+    @Override
+    public void onStatus(String status) {
+        flush();
+    }
+
+    @Override
+    public void onRefresh(int cachedRows) {
+        flush();
+    }
+
+    @Override
+    public void onOutput(String line) {
+        flush();
+    }
+
+    @Override
+    public void onError(String message) {
+        flush();
+    }
+
+    @Override
+    public void onDone() {
+        flush();
+    }
+
+    /**
+     * Posts whatever is queued.
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        timer.stop();
+        final ArrayList<PackageRow> chunk = pending;
+        pending = new ArrayList<PackageRow>(batchSize);
+        post("Package rows", () -> {
+            if (!discarded) {
+                model.updatePackages(chunk);
+            }
+        });
+    }
+
+    /**
+     * Drops the queued rows, the chunks posted but not yet applied and every row
+     * that still arrives, e.g. once the model shows another SDK. Must be called
+     * on the event dispatch thread.
+     */
+    public synchronized void discard() {
+        discarded = true;
+        timer.stop();
+        pending.clear();
+    }
+
+    /**
+     * Runs a task on the event dispatch thread, reporting how long it waited in
+     * the queue and how long it ran to {@link SdkMetrics}.
+     *
+     * @param source what posted the task, as shown in recordings
+     */
+    public static void post(String source, Runnable task) {
+        long posted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            SdkMetrics.DispatchEvent run = SdkMetrics.dispatching(source, System.nanoTime() - posted);
+            task.run();
+            SdkMetrics.dispatched(run);
+        });
+    }
+}
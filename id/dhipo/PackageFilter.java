@@ -0,0 +1,75 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import java.util.Set;
+
+import javax.swing.RowFilter;
+import javax.swing.table.TableModel;
+
+import id.dhipo.sdkbridge.PackageIndex;
+
+/**
+ * Shows the rows of a {@link TablePackagesModel} whose package matches the
+ * search query. Matches come from a {@link PackageIndex} once per query, so
+ * filtering a row is a single set lookup.
+ */
+public class PackageFilter extends RowFilter<TableModel, Integer> {
+
+    private final PackageIndex index;
+    private String query = "";
+    // Null when the query matches everything
+    private Set<String> matches;
+    private int version;
+
+    public PackageFilter(PackageIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @return false if the query has no terms and the filter would let every row
+     *         through
+     */
+    public boolean setQuery(String query) {
+        this.query = query;
+        search();
+        return matches != null;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    private void search() {
+        version = index.getVersion();
+        matches = index.search(query);
+    }
+
+    @Override
+    public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+        if (version != index.getVersion()) {
+            // Packages arrived since the last search
+            search();
+        }
+        if (matches == null) {
+            return true;
+        }
+        TablePackagesModel model = (TablePackagesModel) entry.getModel();
+        return matches.contains(model.getIdAt(entry.getIdentifier()));
+    }
+}
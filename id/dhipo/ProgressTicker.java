@@ -0,0 +1,104 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+
+import id.dhipo.sdkbridge.ProgressSampler;
+import id.dhipo.sdkbridge.ProgressSampler.Sample;
+
+/**
+ * Moves progress from a {@link ProgressSampler} to the progress bar and status
+ * label at a fixed frame rate. Background threads write to the sampler as
+ * often as they like; the event dispatch thread only repaints when a frame is
+ * due and something has changed.
+ */
+public class ProgressTicker implements ActionListener {
+
+    public static final int DEFAULT_FPS = 30;
+
+    private final ProgressSampler sampler = new ProgressSampler();
+    private final JProgressBar bar;
+    private final JLabel label;
+    private final Timer timer;
+
+    public ProgressTicker(JProgressBar bar, JLabel label) {
+        this(bar, label, DEFAULT_FPS);
+    }
+
+    public ProgressTicker(JProgressBar bar, JLabel label, int fps) {
+        this.bar = bar;
+        this.label = label;
+        this.timer = new Timer(1000 / fps, this);
+        this.timer.setCoalesce(true);
+    }
+
+    /**
+     * The sampler to report progress to. Safe to use from any thread.
+     */
+    public ProgressSampler getSampler() {
+        return sampler;
+    }
+
+    public void start() {
+        sampler.reset();
+        timer.start();
+    }
+
+    /**
+     * Stops repainting and drops anything not shown yet, so whatever the caller
+     * puts in the bar and label afterwards stays there.
+     */
+    public void stop() {
+        timer.stop();
+        sampler.reset();
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        Sample sample = sampler.sample(System.nanoTime());
+        if (sample == null) {
+            return;
+        }
+        if (sample.getPercent() >= 0) {
+            bar.setValue(sample.getPercent());
+        }
+        String status = sample.getStatus();
+        if (status == null) {
+            status = sample.getPercent() + "%";
+        }
+        long eta = sample.getEtaMillis();
+        label.setText(eta < 0 ? status : status + " (" + formatEta(eta) + " left)");
+    }
+
+    static String formatEta(long millis) {
+        long seconds = (millis + 999) / 1000;
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        if (seconds < 3600) {
+            return seconds / 60 + "m " + seconds % 60 + "s";
+        }
+        return seconds / 3600 + "h " + seconds / 60 % 60 + "m";
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Records how long after JVM start each startup milestone was reached. Every
+ * phase is logged as it is marked; only the first mark of a phase counts.
+ */
+public class StartupTimer {
+
+    private static final Logger LOG = Logger.getLogger(StartupTimer.class.getName());
+
+    public enum Phase {
+        MAIN("main"), FRAME_VISIBLE("window"), FIRST_ROW("first package"), LISTING_COMPLETE("listing");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private final long origin;
+    private final EnumMap<Phase, Long> marks = new EnumMap<Phase, Long>(Phase.class);
+
+    /**
+     * Starts counting from when the JVM was launched, or from now if the platform
+     * cannot tell.
+     */
+    public StartupTimer() {
+        this(ProcessHandle.current().info().startInstant().map((start) -> start.toEpochMilli())
+                .orElse(System.currentTimeMillis()));
+    }
+
+    public StartupTimer(long originMillis) {
+        this.origin = originMillis;
+    }
+
+    /**
+     * @return false if the phase had already been marked
+     */
+    public synchronized boolean mark(Phase phase) {
+        if (marks.containsKey(phase)) {
+            return false;
+        }
+        long elapsed = System.currentTimeMillis() - origin;
+        marks.put(phase, elapsed);
+        LOG.info("Startup: " + phase.label + " after " + elapsed + " ms");
+        return true;
+    }
+
+    public synchronized boolean isMarked(Phase phase) {
+        return marks.containsKey(phase);
+    }
+
+    /**
+     * @return e.g. "Ready in 2.4 s (window 0.6 s, first package 0.8 s)"
+     */
+    public synchronized String summary() {
+        Long total = marks.get(Phase.LISTING_COMPLETE);
+        StringBuilder text = new StringBuilder("Ready in ").append(seconds(total == null ? 0 : total));
+        String separator = " (";
+        for (Map.Entry<Phase, Long> mark : marks.entrySet()) {
+            if (mark.getKey() == Phase.MAIN || mark.getKey() == Phase.LISTING_COMPLETE) {
+                continue;
+            }
+            text.append(separator).append(mark.getKey().label).append(' ').append(seconds(mark.getValue()));
+            separator = ", ";
+        }
+        if (separator.equals(", ")) {
+            text.append(')');
+        }
+        return text.toString();
+    }
+
+    private static String seconds(long millis) {
+        return millis / 1000 + "." + millis % 1000 / 100 + " s";
+    }
+}
@@ -18,17 +18,50 @@
 package id.dhipo;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.Set;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.table.AbstractTableModel;
 
+import id.dhipo.sdkbridge.ChangeReport;
+import id.dhipo.sdkbridge.PackageRow;
+import id.dhipo.sdkbridge.Revision;
+import id.dhipo.sdkbridge.SdkMetrics;
+
 public class TablePackagesModel extends AbstractTableModel {
 
     private static final long serialVersionUID = 1L;
 
-    private String[] headers = { "", "Name", "Version", "Status", "ID" };
-    private LinkedHashMap<String, PackageInfo> data = new LinkedHashMap<String, PackageInfo>();
+    private String[] headers = { "", "Name", "Version", "Status", "ID", "On disk" };
+    // Rows are kept in insertion order, with an id -> row index on the side so the
+    // paint path (getValueAt) never has to walk or copy the key set.
+    private ArrayList<String> ids = new ArrayList<String>();
+    private ArrayList<PackageInfo> rows = new ArrayList<PackageInfo>();
+    private HashMap<String, Integer> index = new HashMap<String, Integer>();
+    // Refresh generation each row was last reported in, see beginRefresh()
+    private ArrayList<Integer> seen = new ArrayList<Integer>();
+    private int generation;
+    private int refreshed;
+    // Rows changed by the chunk being merged, kept to avoid an allocation per chunk
+    private final BitSet changed = new BitSet();
+    // Ids of the installed packages that have an update, kept up to date on every change
+    private LinkedHashSet<String> outdated = new LinkedHashSet<String>();
+    // Ids of the marked packages per mark, in the order they were marked
+    private final EnumMap<PackageState, LinkedHashSet<String>> marks = new EnumMap<PackageState, LinkedHashSet<String>>(
+            PackageState.class);
+
+    public TablePackagesModel() {
+        marks.put(PackageState.MARK_INSTALL, new LinkedHashSet<String>());
+        marks.put(PackageState.MARK_REMOVE, new LinkedHashSet<String>());
+    }
 
     public enum PackageState {
         UNMARKED, MARK_INSTALL, MARK_REMOVE
@@ -39,9 +72,16 @@ public class TablePackagesModel extends AbstractTableModel {
         String versionAvailable = "";
         String versionInstalled = "";
         String location = "";
+        // Bytes taken by the installed package, -1 until measured
+        long size = -1;
+        Revision revisionAvailable;
+        Revision revisionInstalled;
+        // Worked out whenever a version changes, so the paint path never compares
+        boolean outdated;
+        String status;
         PackageState state;
 
-        PackageInfo() {
+        public PackageInfo() {
         }
 
         // #region Getters and Setters
@@ -59,6 +99,20 @@ public class TablePackagesModel extends AbstractTableModel {
             return location;
         }
 
+        /**
+         * @param size the bytes the installed package takes on disk, -1 if unknown
+         */
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        /**
+         * @return the bytes the installed package takes on disk, -1 if unknown
+         */
+        public long getSize() {
+            return size;
+        }
+
         /**
          * @param name the name to set
          */
@@ -77,7 +131,11 @@ public class TablePackagesModel extends AbstractTableModel {
          * @param versionAvailable the versionAvailable to set
          */
         public void setVersionAvailable(String versionAvailable) {
-            this.versionAvailable = versionAvailable;
+            if (!versionAvailable.equals(this.versionAvailable)) {
+                this.versionAvailable = versionAvailable;
+                this.revisionAvailable = Revision.parse(versionAvailable);
+                versionChanged();
+            }
         }
 
         /**
@@ -91,7 +149,11 @@ public class TablePackagesModel extends AbstractTableModel {
          * @param versionInstalled the versionInstalled to set
          */
         public void setVersionInstalled(String versionInstalled) {
-            this.versionInstalled = versionInstalled;
+            if (!versionInstalled.equals(this.versionInstalled)) {
+                this.versionInstalled = versionInstalled;
+                this.revisionInstalled = Revision.parse(versionInstalled);
+                versionChanged();
+            }
         }
 
         /**
@@ -101,6 +163,20 @@ public class TablePackagesModel extends AbstractTableModel {
             return versionInstalled;
         }
 
+        /**
+         * @return the installed revision, or null if not installed
+         */
+        public Revision getRevisionInstalled() {
+            return revisionInstalled;
+        }
+
+        /**
+         * @return the latest available revision, or null if not known
+         */
+        public Revision getRevisionAvailable() {
+            return revisionAvailable;
+        }
+
         /**
          * @param state the state to set
          */
@@ -120,65 +196,466 @@ public class TablePackagesModel extends AbstractTableModel {
             return !versionInstalled.isEmpty();
         }
 
+        /**
+         * @return false if a newer revision than the installed one is available
+         */
         public boolean isLatest() {
-            return isInstalled() ? versionInstalled.equals(versionAvailable) : true;
+            return !outdated;
+        }
+
+        private void versionChanged() {
+            outdated = revisionInstalled != null && revisionAvailable != null
+                    && revisionInstalled.compareTo(revisionAvailable) < 0;
+            status = null;
+        }
+
+        /**
+         * @return the text shown in the Status column, computed once per version change
+         */
+        public String getStatus() {
+            if (status == null) {
+                if (isInstalled() && isLatest()) {
+                    status = "Installed";
+                } else if (isInstalled()) {
+                    status = "Version " + versionAvailable + " available";
+                } else {
+                    status = "Not installed";
+                }
+            }
+            return status;
         }
     } // Package Info
 
     public int findIdRow(String id) {
-        int i = 0;
-        Set<String> keySet = data.keySet();
-        for (String key : keySet) {
-            if (key.equals(id)) {
-                break;
+        Integer row = index.get(id);
+        return row == null ? -1 : row;
+    }
+
+    public PackageInfo getPackage(String id) {
+        Integer row = index.get(id);
+        return row == null ? null : rows.get(row);
+    }
+
+    public PackageInfo getPackageAt(int row) {
+        return rows.get(row);
+    }
+
+    public String getIdAt(int row) {
+        return ids.get(row);
+    }
+
+    public PackageInfo updatePackage(String id, PackageInfo info) {
+        Integer row = index.get(id);
+        if (row == null) {
+            row = rows.size();
+            ids.add(id);
+            rows.add(info);
+            seen.add(generation);
+            index.put(id, row);
+            trackUpdate(id, info);
+            trackMark(id, null, info.getState());
+            fireTableRowsInserted(row, row);
+            return null;
+        }
+        seen.set(row, generation);
+        trackUpdate(id, info);
+        PackageInfo oldInfo = rows.set(row, info);
+        trackMark(id, oldInfo.getState(), info.getState());
+        fireTableRowsUpdated(row, row);
+        return oldInfo;
+    }
+
+    /**
+     * Merges a chunk of package rows into the model. Only rows whose contents
+     * actually changed are reported: one update event per run of adjacent changed
+     * rows and one ranged insert event for the new rows, so re-reading a listing
+     * that matches the table fires nothing at all.
+     *
+     * @param packages package rows produced by {@link id.dhipo.sdkbridge.AndroidSDK}
+     */
+    public void updatePackages(List<PackageRow> packages) {
+        SdkMetrics.ModelUpdateEvent update = SdkMetrics.updatingModel();
+        int firstInserted = rows.size();
+        changed.clear();
+        for (int i = 0; i < packages.size(); i++) {
+            PackageRow pkg = packages.get(i);
+            String id = pkg.getId();
+            Integer row = index.get(id);
+            PackageInfo info;
+            if (row == null) {
+                info = new PackageInfo();
+                row = rows.size();
+                ids.add(id);
+                rows.add(info);
+                seen.add(generation);
+                index.put(id, row);
+                merge(info, pkg);
+            } else {
+                info = rows.get(row);
+                String name = info.name;
+                String installed = info.versionInstalled;
+                String available = info.versionAvailable;
+                String location = info.location;
+                long size = info.size;
+                if (seen.get(row) != generation) {
+                    // First report of a known row in this refresh. Installed rows come
+                    // first, so if it is not one of them it is no longer installed.
+                    seen.set(row, generation);
+                    if (pkg.getKind() != PackageRow.Kind.INSTALLED) {
+                        uninstall(info);
+                    }
+                }
+                merge(info, pkg);
+                if (row < firstInserted && !(name.equals(info.name) && installed.equals(info.versionInstalled)
+                        && available.equals(info.versionAvailable) && location.equals(info.location)
+                        && size == info.size)) {
+                    changed.set(row);
+                }
+            }
+            trackUpdate(id, info);
+            refreshed++;
+        }
+        fireRowsUpdated(changed);
+        if (rows.size() > firstInserted) {
+            fireTableRowsInserted(firstInserted, rows.size() - 1);
+        }
+        SdkMetrics.modelUpdated(update, packages.size(), rows.size() - firstInserted, changed.cardinality());
+    }
+
+    /**
+     * Applies what sdkmanager reported after a change set ran, instead of
+     * listing every package again. Nothing is changed unless the report can be
+     * reconciled: every planned change must have an outcome, and every outcome
+     * must name a known package, by id or by its unique name.
+     *
+     * @param planned the changes that were run
+     * @return false if a full listing is needed to know the new state
+     */
+    public boolean applyReport(List<ChangeSet.Change> planned, ChangeReport report) {
+        Map<String, ChangeReport.Result> results = report.getResults();
+        Map<String, String> byName = null;
+        LinkedHashMap<String, ChangeReport.Result> resolved = new LinkedHashMap<String, ChangeReport.Result>();
+        for (Map.Entry<String, ChangeReport.Result> result : results.entrySet()) {
+            String id = result.getKey();
+            if (!index.containsKey(id)) {
+                if (byName == null) {
+                    byName = idsByName();
+                }
+                id = byName.get(id);
+                if (id == null) {
+                    return false;
+                }
             }
-            if (i == keySet.size() - 1) {
-                i = -1;
+            resolved.put(id, result.getValue());
+        }
+        for (ChangeSet.Change change : planned) {
+            if (!resolved.containsKey(change.getId())) {
+                return false;
+            }
+        }
+        changed.clear();
+        for (Map.Entry<String, ChangeReport.Result> result : resolved.entrySet()) {
+            String id = result.getKey();
+            int row = index.get(id);
+            PackageInfo info = rows.get(row);
+            String installed = info.versionInstalled;
+            String location = info.location;
+            switch (result.getValue().getOutcome()) {
+            case INSTALLED:
+                String revision = result.getValue().getRevision();
+                Revision reported = Revision.parse(revision);
+                boolean latest = revision == null || (reported != null && info.getRevisionAvailable() != null
+                        && reported.compareTo(info.getRevisionAvailable()) == 0);
+                info.setVersionInstalled(latest ? info.getVersionAvailable() : revision);
+                if (info.getLocation().isEmpty()) {
+                    info.setLocation(id.replace(';', '/') + "/");
+                }
+                break;
+            case UNINSTALLED:
+                uninstall(info);
                 break;
+            default:
+                // A failed change leaves the package as it was
+                continue;
+            }
+            trackUpdate(id, info);
+            if (!(installed.equals(info.versionInstalled) && location.equals(info.location))) {
+                changed.set(row);
             }
         }
-        return i;
+        fireRowsUpdated(changed);
+        return true;
     }
 
-    public PackageInfo updatePackage(String id, PackageInfo info) {
-        PackageInfo oldInfo = data.get(id);
-        data.put(id, info);
-        fireTableRowsUpdated(findIdRow(id) - 1, findIdRow(id) - 1);
-        return oldInfo;
+    /**
+     * Marks packages as no longer installed, firing one update event per run of
+     * adjacent rows that changed. Unknown ids are ignored.
+     */
+    public void markUninstalled(Collection<String> packageIds) {
+        changed.clear();
+        for (String id : packageIds) {
+            Integer row = index.get(id);
+            if (row != null && rows.get(row).isInstalled()) {
+                uninstall(rows.get(row));
+                trackUpdate(id, rows.get(row));
+                changed.set(row);
+            }
+        }
+        fireRowsUpdated(changed);
+    }
+
+    /**
+     * Fires one update event per run of adjacent set bits.
+     */
+    private void fireRowsUpdated(BitSet changed) {
+        for (int from = changed.nextSetBit(0); from >= 0; from = changed.nextSetBit(from)) {
+            int to = changed.nextClearBit(from);
+            fireTableRowsUpdated(from, to - 1);
+            from = to;
+        }
+    }
+
+    private static void uninstall(PackageInfo info) {
+        info.setVersionInstalled("");
+        info.setLocation("");
+        info.setSize(-1);
+    }
+
+    /**
+     * @return package name to id, leaving out names shared by several packages
+     */
+    private Map<String, String> idsByName() {
+        HashMap<String, String> byName = new HashMap<String, String>();
+        HashSet<String> shared = new HashSet<String>();
+        for (int row = 0; row < rows.size(); row++) {
+            String name = rows.get(row).getName();
+            if (byName.put(name, ids.get(row)) != null) {
+                shared.add(name);
+            }
+        }
+        byName.keySet().removeAll(shared);
+        return byName;
+    }
+
+    private void trackUpdate(String id, PackageInfo info) {
+        if (info.isLatest()) {
+            outdated.remove(id);
+        } else {
+            outdated.add(id);
+        }
+    }
+
+    private void trackMark(String id, PackageState oldState, PackageState newState) {
+        if (oldState == newState) {
+            return;
+        }
+        if (oldState != null && oldState != PackageState.UNMARKED) {
+            marks.get(oldState).remove(id);
+        }
+        if (newState != null && newState != PackageState.UNMARKED) {
+            marks.get(newState).add(id);
+        }
+    }
+
+    private static void merge(PackageInfo info, PackageRow pkg) {
+        switch (pkg.getKind()) {
+        case INSTALLED:
+            info.setName(pkg.getDescription());
+            info.setVersionInstalled(pkg.getVersion());
+            info.setLocation(pkg.getLocation());
+            break;
+        case AVAILABLE:
+            info.setName(pkg.getDescription());
+            info.setVersionAvailable(pkg.getVersion());
+            break;
+        default:
+            info.setVersionInstalled(pkg.getInstalledVersion());
+            info.setVersionAvailable(pkg.getVersion());
+            break;
+        }
+    }
+
+    /**
+     * Starts reconciling the rows already in the model (e.g. loaded from the
+     * package list cache) with a fresh listing. Rows not reported again before
+     * {@link #endRefresh()} are dropped.
+     */
+    public void beginRefresh() {
+        generation++;
+        refreshed = 0;
+    }
+
+    /**
+     * Removes the rows that the fresh listing did not report. A listing that
+     * reported nothing at all (sdkmanager missing or offline) is not trusted and
+     * leaves the model as it is.
+     */
+    public void endRefresh() {
+        if (refreshed == 0) {
+            return;
+        }
+        refreshed = 0;
+        for (int row = rows.size() - 1; row >= 0; row--) {
+            if (seen.get(row) != generation) {
+                int last = row;
+                while (row > 0 && seen.get(row - 1) != generation) {
+                    row--;
+                }
+                for (int removed = row; removed <= last; removed++) {
+                    outdated.remove(ids.get(removed));
+                    trackMark(ids.get(removed), rows.get(removed).getState(), null);
+                }
+                ids.subList(row, last + 1).clear();
+                rows.subList(row, last + 1).clear();
+                seen.subList(row, last + 1).clear();
+                fireTableRowsDeleted(row, last);
+            }
+        }
+        reindex();
+    }
+
+    /**
+     * Keeps every row when the listing in progress failed or was cancelled, since
+     * rows it did not get to are not gone.
+     */
+    public void cancelRefresh() {
+        refreshed = 0;
+    }
+
+    private void reindex() {
+        index.clear();
+        for (int i = 0; i < ids.size(); i++) {
+            index.put(ids.get(i), i);
+        }
     }
 
     public void clear() {
-        data.clear();
+        ids.clear();
+        rows.clear();
+        seen.clear();
+        index.clear();
+        outdated.clear();
+        for (LinkedHashSet<String> marked : marks.values()) {
+            marked.clear();
+        }
         fireTableDataChanged();
     }
 
-    public void setData(LinkedHashMap<String, PackageInfo> data) {
-        this.data = data;
+    public void setData(Map<String, PackageInfo> data) {
+        ids = new ArrayList<String>(data.keySet());
+        rows = new ArrayList<PackageInfo>(data.values());
+        seen = new ArrayList<Integer>(Collections.nCopies(ids.size(), generation));
+        index = new HashMap<String, Integer>(data.size() * 2);
+        outdated = new LinkedHashSet<String>();
+        for (LinkedHashSet<String> marked : marks.values()) {
+            marked.clear();
+        }
+        for (Map.Entry<String, PackageInfo> entry : data.entrySet()) {
+            trackUpdate(entry.getKey(), entry.getValue());
+            trackMark(entry.getKey(), null, entry.getValue().getState());
+        }
+        reindex();
         fireTableDataChanged();
     }
 
-    public LinkedHashMap<String, PackageInfo> getData() {
-        return this.data;
+    /**
+     * @return the ids of the installed packages that have an update
+     */
+    public String[] getUpdates() {
+        return outdated.toArray(new String[0]);
     }
 
-    public String[] getUpdates() {
-        ArrayList<String> updates = new ArrayList<String>();
-        for (String key : this.data.keySet()) {
-            if (!this.data.get(key).isLatest()) {
-                updates.add(key);
+    public int getUpdateCount() {
+        return outdated.size();
+    }
+
+    /**
+     * @return package id to location of every installed package whose location is
+     *         known
+     */
+    public Map<String, String> getInstalledLocations() {
+        HashMap<String, String> locations = new HashMap<String, String>();
+        for (int row = 0; row < rows.size(); row++) {
+            PackageInfo info = rows.get(row);
+            if (info.isInstalled() && !info.getLocation().isEmpty()) {
+                locations.put(ids.get(row), info.getLocation());
             }
         }
-        return updates.toArray(new String[0]);
+        return locations;
     }
 
-    public String[] getMark(PackageState mark) {
-        ArrayList<String> packages = new ArrayList<String>();
-        for (String key : this.data.keySet()) {
-            if (this.data.get(key).getState() == mark) {
-                packages.add(key);
+    /**
+     * Fills in the On disk column, firing one update event per run of adjacent
+     * rows that changed.
+     *
+     * @param sizes package id to size in bytes
+     */
+    public void setSizes(Map<String, Long> sizes) {
+        changed.clear();
+        for (Map.Entry<String, Long> entry : sizes.entrySet()) {
+            Integer row = index.get(entry.getKey());
+            if (row != null && rows.get(row).size != entry.getValue()) {
+                rows.get(row).setSize(entry.getValue());
+                changed.set(row);
+            }
+        }
+        fireRowsUpdated(changed);
+    }
+
+    /**
+     * Unmarks every marked package, e.g. once the marked changes were applied.
+     */
+    public void clearMarks() {
+        for (LinkedHashSet<String> marked : marks.values()) {
+            for (String id : marked) {
+                int row = index.get(id);
+                rows.get(row).setState(PackageState.UNMARKED);
+                fireTableCellUpdated(row, 0);
             }
+            marked.clear();
+        }
+    }
+
+    /**
+     * @return the ids of the packages with the given mark, in the order they were
+     *         marked
+     */
+    public String[] getMark(PackageState mark) {
+        LinkedHashSet<String> marked = marks.get(mark);
+        return marked == null ? new String[0] : marked.toArray(new String[0]);
+    }
+
+    public int getMarkCount(PackageState mark) {
+        LinkedHashSet<String> marked = marks.get(mark);
+        return marked == null ? 0 : marked.size();
+    }
+
+    /**
+     * @return the marked removals followed by the marked installs
+     */
+    public ChangeSet getChanges() {
+        ArrayList<ChangeSet.Change> changes = new ArrayList<ChangeSet.Change>(
+                getMarkCount(PackageState.MARK_REMOVE) + getMarkCount(PackageState.MARK_INSTALL));
+        addChanges(changes, ChangeSet.Action.REMOVE, marks.get(PackageState.MARK_REMOVE));
+        addChanges(changes, ChangeSet.Action.INSTALL, marks.get(PackageState.MARK_INSTALL));
+        return new ChangeSet(changes);
+    }
+
+    /**
+     * @return an update for every installed package that has one
+     */
+    public ChangeSet getUpdateChanges() {
+        ArrayList<ChangeSet.Change> changes = new ArrayList<ChangeSet.Change>(outdated.size());
+        addChanges(changes, ChangeSet.Action.UPDATE, outdated);
+        return new ChangeSet(changes);
+    }
+
+    private void addChanges(List<ChangeSet.Change> changes, ChangeSet.Action action, Iterable<String> packageIds) {
+        for (String id : packageIds) {
+            PackageInfo info = rows.get(index.get(id));
+            changes.add(new ChangeSet.Change(action, id, info.getName(), info.getVersionInstalled(),
+                    info.getVersionAvailable()));
         }
-        return packages.toArray(new String[0]);
     }
 
     // #region Overrides
@@ -187,6 +664,8 @@ public class TablePackagesModel extends AbstractTableModel {
         switch (columnIndex) {
         case 0:
             return Boolean.class;
+        case 5:
+            return Long.class;
         default:
             return String.class;
         }
@@ -199,7 +678,7 @@ public class TablePackagesModel extends AbstractTableModel {
 
     @Override
     public int getRowCount() {
-        return data.size();
+        return rows.size();
     }
 
     @Override
@@ -214,8 +693,7 @@ public class TablePackagesModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        String key = data.keySet().toArray(new String[0])[rowIndex];
-        PackageInfo info = data.get(key);
+        PackageInfo info = rows.get(rowIndex);
         switch (columnIndex) {
         case 0:
             return (info.getState() == PackageState.MARK_INSTALL
@@ -225,15 +703,12 @@ public class TablePackagesModel extends AbstractTableModel {
         case 2:
             return info.isInstalled() ? info.getVersionInstalled() : info.getVersionAvailable();
         case 3:
-            if (info.isInstalled() && info.isLatest()) {
-                return "Installed";
-            } else if (info.isInstalled() && !info.isLatest()) {
-                return "Version " + info.getVersionAvailable() + " available";
-            } else {
-                return "Not installed";
-            }
+            return info.getStatus();
         case 4:
-            return key;
+            return ids.get(rowIndex);
+        case 5:
+            // A Long rather than text, so the row sorter orders sizes numerically
+            return info.isInstalled() && info.size >= 0 ? Long.valueOf(info.size) : null;
         default:
             return null;
         }
@@ -243,8 +718,8 @@ public class TablePackagesModel extends AbstractTableModel {
     public void setValueAt(Object val, int row, int column) {
         switch (column) {
         case 0:
-            String key = data.keySet().toArray(new String[0])[row];
-            PackageInfo info = data.get(key);
+            PackageInfo info = rows.get(row);
+            PackageState oldState = info.getState();
             Boolean value = (Boolean) val;
             Boolean installed = info.isInstalled();
             if (value == false && installed) {
@@ -254,6 +729,7 @@ public class TablePackagesModel extends AbstractTableModel {
             } else {
                 info.setState(PackageState.UNMARKED);
             }
+            trackMark(ids.get(row), oldState, info.getState());
             break;
         default:
         }
@@ -17,137 +17,375 @@
 
 package id.dhipo.sdkbridge;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
-import java.nio.file.Paths;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class AndroidSDK {
+
+    /**
+     * The kinds of sdkmanager runs, each with its own time limit.
+     */
+    public enum Operation {
+        LIST(10), INSTALL(120), UNINSTALL(15), UPDATE(120);
+
+        private final long defaultMinutes;
+
+        Operation(long defaultMinutes) {
+            this.defaultMinutes = defaultMinutes;
+        }
+    }
+
     private File sdkPath;
-    private Consumer<SDKAction> listener;
+    private SdkListener listener;
+    private SdkManagerExecutor executor;
+    private final EnumMap<Operation, Long> timeouts = new EnumMap<Operation, Long>(Operation.class);
+    private ArrayList<PackageRow> recording;
+    private RepositorySource repository = RepositorySource.fromProperty();
+    private OperationLog log;
+    // What the current run is doing, as shown in the log
+    private volatile String running = "";
+    // Events the parser passed on during the current run
+    private long relayed;
+    // Passes parsed events on to the listener, recording rows for the cache
+    private final SdkListener relay = new SdkListener() {
+        @Override
+        public void onPackage(PackageRow row) {
+            relayed++;
+            if (recording != null) {
+                recording.add(row);
+            }
+            listener.onPackage(row);
+        }
+
+        @Override
+        public void onProgress(int percent) {
+            relayed++;
+            listener.onProgress(percent);
+        }
+
+        @Override
+        public void onStatus(String status) {
+            relayed++;
+            listener.onStatus(status);
+        }
+
+        @Override
+        public void onOutput(String line) {
+            relayed++;
+            log(line);
+            listener.onOutput(line);
+        }
+    };
+    private final SdkManagerOutputParser parser = new SdkManagerOutputParser(relay);
 
+    /**
+     * Runs the command line front end, see {@link SdkCli}.
+     */
     public static void main(String[] args) {
-        AndroidSDK sdk = new AndroidSDK(System.getenv("ANDROID_HOME"));
-        sdk.setListener((action) -> {
-            switch (action.getAction()) {
-            case SDKAction.ACTION_PROGRESS:
-                System.out.println(action.getPayload().concat("%"));
-                break;
-            case SDKAction.ACTION_STATUS:
-                System.out.println(action.getPayload());
-                break;
-            case SDKAction.ACTION_AVAILABLE:
-                System.out.println(String.join("", action.getPayload(), " v", action.getExtra()[0]));
-                break;
-            default:
-                break;
-            }
-        });
-        sdk.getPackageList();
+        SdkCli.main(args);
     }
 
     public AndroidSDK(String sdkPath) {
         this.sdkPath = new File(sdkPath);
     }
 
-    public AndroidSDK(File sdkPath, Consumer<SDKAction> listener) {
+    public AndroidSDK(File sdkPath, SdkListener listener) {
         this.sdkPath = sdkPath;
         this.listener = listener;
     }
 
+    public AndroidSDK(String sdkPath, SdkListener listener) {
+        this(new File(sdkPath), listener);
+    }
+
+    public AndroidSDK(File sdkPath, Consumer<SDKAction> listener) {
+        this(sdkPath, SdkListener.of(listener));
+    }
+
     public AndroidSDK(String sdkPath, Consumer<SDKAction> listener) {
-        this.sdkPath = new File(sdkPath);
-        this.listener = listener;
+        this(new File(sdkPath), SdkListener.of(listener));
     }
 
     public AndroidSDK(File sdkPath) {
         this.sdkPath = sdkPath;
     }
 
-    public void setListener(Consumer<SDKAction> listener) {
+    public File getSdkPath() {
+        return sdkPath;
+    }
+
+    /**
+     * Limits how long an operation may run before sdkmanager is killed.
+     *
+     * @param timeout the limit, 0 for none
+     */
+    public void setTimeout(Operation operation, long timeout, TimeUnit unit) {
+        timeouts.put(operation, unit.toMillis(timeout));
+    }
+
+    public long getTimeout(Operation operation, TimeUnit unit) {
+        Long millis = timeouts.get(operation);
+        return millis == null ? unit.convert(operation.defaultMinutes, TimeUnit.MINUTES)
+                : unit.convert(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the sdkmanager run in progress, if any. The run reports
+     * {@link SdkListener#onError(String)} followed by {@link SdkListener#onDone()}.
+     */
+    public void cancel() {
+        executor().cancel();
+    }
+
+    public boolean isRunning() {
+        return executor().isRunning();
+    }
+
+    private synchronized SdkManagerExecutor executor() {
+        if (executor == null) {
+            executor = new SdkManagerExecutor(sdkPath);
+        }
+        return executor;
+    }
+
+    /**
+     * Reads available packages from repository manifests instead of running
+     * {@code sdkmanager --list}. Defaults to the manifests named by the
+     * {@value RepositorySource#PROPERTY} system property, if set.
+     *
+     * @param repository the manifests to read, or null to use sdkmanager
+     */
+    public void setRepository(RepositorySource repository) {
+        this.repository = repository;
+    }
+
+    public RepositorySource getRepository() {
+        return repository;
+    }
+
+    /**
+     * Keeps the output of every run from now on, see {@link OperationLog}.
+     *
+     * @param log the log to append to, or null to keep nothing
+     */
+    public void setLog(OperationLog log) {
+        this.log = log;
+    }
+
+    public OperationLog getLog() {
+        return log;
+    }
+
+    private void log(String line) {
+        OperationLog target = log;
+        if (target != null) {
+            target.append(running, line);
+        }
+    }
+
+    /**
+     * Names a run for the log, e.g. {@code "install platforms;android-28"}.
+     */
+    private static String describe(Operation operation, String... args) {
+        StringBuilder name = new StringBuilder(operation.name().toLowerCase(Locale.ROOT));
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                name.append(' ').append(arg);
+            }
+        }
+        return name.toString();
+    }
+
+    public void setListener(SdkListener listener) {
         this.listener = listener;
     }
 
-    private void procSdkManager(String param) {
+    public void setListener(Consumer<SDKAction> listener) {
+        this.listener = SdkListener.of(listener);
+    }
+
+    private boolean procSdkManager(Operation operation, String... args) {
+        running = describe(operation, args);
+        log("$ sdkmanager " + String.join(" ", args));
         try {
-            // enter code here
-            String osname = System.getProperty("os.name");
-            String sdkmanagerCmd = "sdkmanager";
-            if (osname.contains("Windows")){
-                sdkmanagerCmd = "sdkmanager.bat";
-            }
-            Process proc = Runtime.getRuntime().exec(Paths
-                    .get(sdkPath.getAbsolutePath(), "tools", "bin", String.join(" ", sdkmanagerCmd, param)).toString());
-
-            // enter code here
-
-            try (BufferedReader input = new BufferedReader(new InputStreamReader(proc.getInputStream()))) {
-                String line;
-                String status = SDKAction.ACTION_OTHER;
-                while ((line = input.readLine()) != null) {
-                    //System.out.println(line);
-                    // Parse progress status
-                    if (line.contains("[")) {
-                        Pattern reProgress = Pattern.compile("([0-9]+)[\\s%]+([A-Za-z]+.*)");
-                        Matcher mtProgress = reProgress.matcher(line);
-                        if (mtProgress.find()) {
-                            listener.accept(new SDKAction(SDKAction.ACTION_PROGRESS, mtProgress.group(1)));
-                            listener.accept(new SDKAction(SDKAction.ACTION_STATUS, mtProgress.group(2)));
-                        }
-                    } else if (line.contains("Installed")) {
-                        status = SDKAction.ACTION_INSTALLED;
-                    } else if (line.contains("Available")) {
-                        status = SDKAction.ACTION_AVAILABLE;
-                    } else if (line.contains("|") && !line.contains("Path") && !line.contains("---")) {
-                        Pattern rePackages;
-                        if (status == SDKAction.ACTION_AVAILABLE){
-                            rePackages = Pattern.compile("(.*)\\s+\\|(.*)\\s+\\|(.*)\\s*");
-                        } else {
-                            rePackages = Pattern.compile("(.*)\\s+\\|(.*)\\s+\\|(.*)\\s+\\|(.*)");
-                        }
-                        Matcher mtPackages = rePackages.matcher(line);
-                        if (mtPackages.find()) {
-                            SDKAction action = new SDKAction(status, mtPackages.group(1).trim());
-                            String[] extra = { mtPackages.group(2).trim(), mtPackages.group(3).trim() };
-                            action.setExtra(extra);
-                            listener.accept(action);
-                        }
-                    } else {
-                        listener.accept(new SDKAction(SDKAction.ACTION_OTHER, line));
-                    }
-                }
+            int exitCode = executor().run(Arrays.asList(args), getTimeout(operation, TimeUnit.MILLISECONDS),
+                    TimeUnit.MILLISECONDS, (output) -> parse(operation.name(), output), (line) -> {
+                        log(line);
+                        listener.onOutput(line);
+                    });
+            if (exitCode != 0) {
+                fail("sdkmanager exited with code " + exitCode);
+                return false;
             }
+            return true;
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            fail("Interrupted");
+            return false;
+        } catch (IllegalStateException | TimeoutException | IOException err) {
+            // Cancelled (CancellationException), or this SDK is already running sdkmanager
+            fail(err.getMessage());
+            return false;
+        } finally {
+            listener.onDone();
+        }
+    }
+
+    private void fail(String message) {
+        log("Error: " + message);
+        listener.onError(message);
+    }
 
-        } catch (Exception err) {
-            listener.accept(new SDKAction(SDKAction.ACTION_ERROR, err.getMessage()));
+    /**
+     * Runs captured sdkmanager output through the same parsing and event dispatch
+     * as a live invocation, ending with {@link SdkListener#onDone()}.
+     *
+     * @param output the recorded standard output of sdkmanager
+     */
+    public void replayOutput(InputStream output) {
+        running = "replay";
+        try {
+            parse("REPLAY", output);
+        } catch (IOException err) {
+            listener.onError(err.getMessage());
         } finally {
-            listener.accept(new SDKAction(SDKAction.ACTION_DONE, ""));
+            listener.onDone();
         }
+    }
 
+    /**
+     * Parses one run's output, reporting its line and event counts, and how long
+     * the parser sat waiting for sdkmanager, to {@link SdkMetrics}.
+     */
+    private void parse(String operation, InputStream output) throws IOException {
+        parser.reset();
+        relayed = 0;
+        SdkMetrics.ParseEvent event = SdkMetrics.parsing(operation);
+        WaitTimingStream timed = new WaitTimingStream(output);
+        try {
+            parser.parse(timed);
+        } finally {
+            SdkMetrics.parsed(event, parser.getLineCount(), relayed, timed.waited);
+        }
     }
 
+    /**
+     * Adds up the time spent in reads, which is mostly waiting for the process
+     * to write more.
+     */
+    private static class WaitTimingStream extends FilterInputStream {
+        long waited;
+
+        WaitTimingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                waited += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                waited += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Lists installed and available packages. Rows cached from the previous
+     * listing of this SDK root are sent first, followed by
+     * {@link SdkListener#onRefresh(int)}, the
+     * installed packages found on disk, and then the rows of the fresh sdkmanager
+     * run (or of the repository manifests, see {@link #setRepository}), which
+     * replace the cache on success.
+     */
     public void getPackageList() {
-        procSdkManager("--list");
+        PackageListCache cache = new PackageListCache(sdkPath);
+        int cached = cache.replay(listener);
+        listener.onRefresh(cached);
+        scanInstalled();
+        recording = new ArrayList<PackageRow>();
+        try {
+            boolean listed = repository != null ? readRepository() : procSdkManager(Operation.LIST, "--list");
+            if (listed && !recording.isEmpty()) {
+                cache.store(recording);
+            }
+        } catch (IOException err) {
+            // A listing that cannot be cached is still a good listing
+            cache.invalidate();
+        } finally {
+            recording = null;
+        }
+    }
+
+    private boolean readRepository() {
+        running = "list repository";
+        try {
+            repository.read(relay);
+            return true;
+        } catch (IOException err) {
+            fail(err.getMessage());
+            return false;
+        } finally {
+            listener.onDone();
+        }
+    }
+
+    /**
+     * Reports the installed packages straight from their package.xml files,
+     * without launching sdkmanager.
+     *
+     * @return the number of installed packages
+     */
+    public int scanInstalled() {
+        return new InstalledPackageScanner(sdkPath).scan(listener);
     }
 
-    public void updateRepo(){
-        procSdkManager("--update");
+    public boolean updateRepo(){
+        return procSdkManager(Operation.UPDATE, "--update");
     }
 
-    public void installPackage(String packageName){
-        procSdkManager(packageName);
+    public boolean installPackage(String packageName){
+        return procSdkManager(Operation.INSTALL, packageName);
     }
 
-    public void installPackages(String[] packageNames){
-        String param = String.join(" ", packageNames);
-        procSdkManager(param);
+    /**
+     * Installs or updates packages. sdkmanager runs with {@code --verbose}, the
+     * only mode in which it prints the per-package outcome lines
+     * {@link ChangeReport} reads; removals do the same.
+     */
+    public boolean installPackages(String[] packageNames){
+        List<String> args = new ArrayList<String>(packageNames.length + 1);
+        args.add("--verbose");
+        args.addAll(Arrays.asList(packageNames));
+        return procSdkManager(Operation.INSTALL, args.toArray(new String[0]));
     }
 
-    public void removePackages(String[] packageNames){
-        String param = "--uninstall " + String.join(" ", packageNames);
-        procSdkManager(param);
+    public boolean removePackages(String[] packageNames){
+        List<String> args = new ArrayList<String>(packageNames.length + 2);
+        args.add("--uninstall");
+        args.add("--verbose");
+        args.addAll(Arrays.asList(packageNames));
+        return procSdkManager(Operation.UNINSTALL, args.toArray(new String[0]));
     }
 }
\ No newline at end of file
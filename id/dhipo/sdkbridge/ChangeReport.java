@@ -0,0 +1,147 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects what sdkmanager says it installed, uninstalled or failed to do, so
+ * the package table can be updated without listing everything again. It
+ * understands the lines sdkmanager prints as each package completes, most of
+ * which only appear with {@code --verbose}:
+ *
+ * <pre>
+ * Info: "Install Android SDK Platform 30 (revision: 3)" complete.
+ * Info: "Uninstall Android Emulator (revision: 30.0.5)" finished.
+ * Warning: "Install Google APIs (revision: 1)" failed.
+ * Warning: Failed to find package 'platforms;android-99'
+ * Installed Android SDK Platform 30
+ * Uninstalled Android Emulator
+ * </pre>
+ *
+ * Packages are identified the way sdkmanager names them, usually by display
+ * name and sometimes by path. Safe to feed from several jobs at once.
+ */
+public class ChangeReport {
+
+    public enum Outcome {
+        INSTALLED, UNINSTALLED, FAILED
+    }
+
+    public static final class Result {
+        private final Outcome outcome;
+        private final String revision;
+
+        Result(Outcome outcome, String revision) {
+            this.outcome = outcome;
+            this.revision = revision;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * @return the revision sdkmanager reported, or null
+         */
+        public String getRevision() {
+            return revision;
+        }
+    }
+
+    private static final String REVISION = " (revision: ";
+
+    private final Map<String, Result> results = new LinkedHashMap<String, Result>();
+
+    /**
+     * Looks at one output line, ignoring it unless it reports an outcome.
+     */
+    public void accept(String line) {
+        String text = stripLevel(line.trim());
+        if (text.startsWith("\"")) {
+            int close = text.indexOf('"', 1);
+            if (close < 0) {
+                return;
+            }
+            String verdict = text.substring(close + 1).trim();
+            String task = text.substring(1, close);
+            if (verdict.equals("failed.")) {
+                if (task.startsWith("Install ")) {
+                    put(task.substring("Install ".length()), Outcome.FAILED);
+                } else if (task.startsWith("Uninstall ")) {
+                    put(task.substring("Uninstall ".length()), Outcome.FAILED);
+                }
+            } else if (verdict.equals("complete.") || verdict.equals("finished.")) {
+                if (task.startsWith("Install ")) {
+                    put(task.substring("Install ".length()), Outcome.INSTALLED);
+                } else if (task.startsWith("Uninstall ")) {
+                    put(task.substring("Uninstall ".length()), Outcome.UNINSTALLED);
+                }
+            }
+        } else if (text.startsWith("Failed to find package '") && text.endsWith("'")) {
+            put(text.substring("Failed to find package '".length(), text.length() - 1), Outcome.FAILED);
+        } else if (text.endsWith(":")) {
+            // Section headers of a listing, e.g. "Installed packages:"
+            return;
+        } else if (text.startsWith("Installed ")) {
+            put(text.substring("Installed ".length()), Outcome.INSTALLED);
+        } else if (text.startsWith("Uninstalled ")) {
+            put(text.substring("Uninstalled ".length()), Outcome.UNINSTALLED);
+        }
+    }
+
+    private static String stripLevel(String text) {
+        for (String level : new String[] { "Info: ", "Warning: ", "Error: " }) {
+            if (text.startsWith(level)) {
+                return text.substring(level.length()).trim();
+            }
+        }
+        return text;
+    }
+
+    /**
+     * @param subject e.g. {@code "Android SDK Platform 30 (revision: 3)"}
+     */
+    private synchronized void put(String subject, Outcome outcome) {
+        String name = subject.trim();
+        String revision = null;
+        int at = name.lastIndexOf(REVISION);
+        if (at >= 0 && name.endsWith(")")) {
+            revision = name.substring(at + REVISION.length(), name.length() - 1).trim();
+            name = name.substring(0, at).trim();
+        }
+        Result previous = results.get(name);
+        if (revision == null && previous != null) {
+            revision = previous.revision;
+        }
+        results.put(name, new Result(outcome, revision));
+    }
+
+    /**
+     * @return outcomes keyed by package name or path, in the order first seen
+     */
+    public synchronized Map<String, Result> getResults() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Result>(results));
+    }
+
+    public synchronized boolean isEmpty() {
+        return results.isEmpty();
+    }
+}
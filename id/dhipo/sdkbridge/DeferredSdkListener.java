@@ -0,0 +1,134 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Holds on to events until the real listener is ready for them. This lets an
+ * operation start before whoever is interested in it exists, e.g. a listing
+ * launched while the window is still being built.
+ */
+public class DeferredSdkListener implements SdkListener {
+
+    private ArrayList<Consumer<SdkListener>> pending = new ArrayList<Consumer<SdkListener>>();
+    // Set under the lock once the queue is replayed; read without it afterwards
+    private volatile SdkListener target;
+
+    /**
+     * Sends everything received so far to the listener, in order, then forwards
+     * new events as they come, straight through without queueing or locking.
+     * Can only be called once.
+     */
+    public void attach(SdkListener listener) {
+        synchronized (this) {
+            if (target != null) {
+                throw new IllegalStateException("Already attached");
+            }
+            // Replay under the lock so no new event can overtake the queued ones
+            for (Consumer<SdkListener> event : pending) {
+                event.accept(listener);
+            }
+            pending = null;
+            target = listener;
+        }
+    }
+
+    /**
+     * Slow path for events that arrive before, or while, the listener is
+     * attached.
+     */
+    private synchronized void dispatch(Consumer<SdkListener> event) {
+        if (target != null) {
+            event.accept(target);
+        } else {
+            pending.add(event);
+        }
+    }
+
+    @Override
+    public void onPackage(PackageRow row) {
+        SdkListener listener = target;
+        if (listener != null) {
+            listener.onPackage(row);
+        } else {
+            dispatch((queued) -> queued.onPackage(row));
+        }
+    }
+
+    @Override
+    public void onProgress(int percent) {
+        SdkListener listener = target;
+        if (listener != null) {
+            listener.onProgress(percent);
+        } else {
+            dispatch((queued) -> queued.onProgress(percent));
+        }
+    }
+
+    @Override
+    public void onStatus(String status) {
+        SdkListener listener = target;
+        if (listener != null) {
+            listener.onStatus(status);
+        } else {
+            dispatch((queued) -> queued.onStatus(status));
+        }
+    }
+
+    @Override
+    public void onRefresh(int cachedRows) {
+        SdkListener listener = target;
+        if (listener != null) {
+            listener.onRefresh(cachedRows);
+        } else {
+            dispatch((queued) -> queued.onRefresh(cachedRows));
+        }
+    }
+
+    @Override
+    public void onOutput(String line) {
+        SdkListener listener = target;
+        if (listener != null) {
+            listener.onOutput(line);
+        } else {
+            dispatch((queued) -> queued.onOutput(line));
+        }
+    }
+
+    @Override
+    public void onError(String message) {
+        SdkListener listener = target;
+        if (listener != null) {
+            listener.onError(message);
+        } else {
+            dispatch((queued) -> queued.onError(message));
+        }
+    }
+
+    @Override
+    public void onDone() {
+        SdkListener listener = target;
+        if (listener != null) {
+            listener.onDone();
+        } else {
+            dispatch((queued) -> queued.onDone());
+        }
+    }
+}
@@ -0,0 +1,278 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Measures how much disk space installed packages take. The packages, and the
+ * directories within each, are walked in parallel on the common fork-join
+ * pool, and the results are kept on disk next to the package list cache. A
+ * package is only walked again when the modification time of its directory or
+ * of its package.xml has changed, which is what sdkmanager touches when it
+ * installs, updates or removes it.
+ */
+public class DiskUsage {
+
+    private static final int MAGIC = 0x41474455; // "AGDU"
+    private static final int FORMAT = 1;
+
+    public interface Listener {
+        /**
+         * Called once with every size that could be taken from the cache, then once
+         * per package that had to be walked, from the thread that measured it.
+         *
+         * @param sizes package id to size in bytes
+         */
+        void sizesMeasured(Map<String, Long> sizes);
+    }
+
+    private static final class Entry {
+        final long stamp;
+        final long size;
+
+        Entry(long stamp, long size) {
+            this.stamp = stamp;
+            this.size = size;
+        }
+    }
+
+    private final File sdkPath;
+    private final File cacheFile;
+    private volatile boolean cancelled;
+
+    public DiskUsage(File sdkPath) {
+        this(sdkPath, PackageListCache.defaultDirectory());
+    }
+
+    public DiskUsage(File sdkPath, File cacheDirectory) {
+        this.sdkPath = sdkPath.getAbsoluteFile();
+        String key = Integer.toHexString(this.sdkPath.getPath().hashCode());
+        this.cacheFile = new File(cacheDirectory, "disk-usage-" + key + ".bin");
+    }
+
+    /**
+     * Measures the given packages and blocks until all of them are done, or
+     * until {@link #cancel()} is called.
+     *
+     * @param locations package id to its directory relative to the SDK root, as in
+     *        {@link PackageRow#getLocation()}
+     * @return package id to size in bytes
+     */
+    public Map<String, Long> measure(Map<String, String> locations, Listener listener) {
+        Map<String, Entry> cached = load();
+        Map<String, Entry> measured = new HashMap<String, Entry>();
+        Map<String, Long> sizes = new HashMap<String, Long>();
+        Map<String, Long> fromCache = new HashMap<String, Long>();
+        List<String> walk = new ArrayList<String>();
+        for (Map.Entry<String, String> pkg : locations.entrySet()) {
+            String location = pkg.getValue();
+            Entry entry = cached.get(location);
+            if (entry != null && entry.stamp == stamp(directory(location))) {
+                measured.put(location, entry);
+                fromCache.put(pkg.getKey(), entry.size);
+            } else {
+                walk.add(pkg.getKey());
+            }
+        }
+        sizes.putAll(fromCache);
+        if (!fromCache.isEmpty()) {
+            listener.sizesMeasured(fromCache);
+        }
+        Map<String, Entry> walked = new ConcurrentHashMap<String, Entry>();
+        List<ForkJoinTask<?>> walks = new ArrayList<ForkJoinTask<?>>(walk.size());
+        for (String id : walk) {
+            String location = locations.get(id);
+            walks.add(ForkJoinPool.commonPool().submit(() -> {
+                File directory = directory(location);
+                long stamp = stamp(directory);
+                long size = new SizeTask(directory.toPath(), this::isCancelled).invoke();
+                if (cancelled) {
+                    // Only part of it was counted
+                    return;
+                }
+                walked.put(id, new Entry(stamp, size));
+                HashMap<String, Long> one = new HashMap<String, Long>(2);
+                one.put(id, size);
+                listener.sizesMeasured(one);
+            }));
+        }
+        for (ForkJoinTask<?> task : walks) {
+            task.join();
+        }
+        for (Map.Entry<String, Entry> entry : walked.entrySet()) {
+            measured.put(locations.get(entry.getKey()), entry.getValue());
+            sizes.put(entry.getKey(), entry.getValue().size);
+        }
+        if (!walk.isEmpty() || measured.size() != cached.size()) {
+            try {
+                store(measured);
+            } catch (IOException err) {
+                // Sizes will simply be measured again next time
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Stops a {@link #measure} in progress. The packages it finished keep their
+     * sizes; the others are walked again next time.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the number of bytes taken by the files under the directory, not
+     *         following symbolic links
+     */
+    public static long size(File directory) {
+        return ForkJoinPool.commonPool().invoke(new SizeTask(directory.toPath(), () -> false));
+    }
+
+    /**
+     * @return the size with a binary unit, e.g. "1.4 GB"
+     */
+    public static String format(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String units = "KMGTPE";
+        int unit = 0;
+        double value = bytes / 1024.0;
+        while (value >= 1024 && unit < units.length() - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(value < 10 ? "%.1f %cB" : "%.0f %cB", value, units.charAt(unit));
+    }
+
+    private File directory(String location) {
+        return new File(sdkPath, location);
+    }
+
+    private static long stamp(File directory) {
+        return directory.lastModified() * 31 + new File(directory, InstalledPackageScanner.PACKAGE_XML).lastModified();
+    }
+
+    private Map<String, Entry> load() {
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        if (!cacheFile.isFile()) {
+            return entries;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !sdkPath.getPath().equals(in.readUTF())) {
+                return entries;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                entries.put(in.readUTF(), new Entry(in.readLong(), in.readLong()));
+            }
+        } catch (IOException err) {
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private void store(Map<String, Entry> entries) throws IOException {
+        File directory = cacheFile.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + directory);
+        }
+        File temp = new File(directory, cacheFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(sdkPath.getPath());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().stamp);
+                out.writeLong(entry.getValue().size);
+            }
+        }
+        Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static class SizeTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final BooleanSupplier cancelled;
+
+        SizeTask(Path directory, BooleanSupplier cancelled) {
+            this.directory = directory;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Long compute() {
+            if (cancelled.getAsBoolean()) {
+                return 0L;
+            }
+            long size = 0;
+            List<SizeTask> subtasks = new ArrayList<SizeTask>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        SizeTask subtask = new SizeTask(child, cancelled);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    } else {
+                        size += attributes.size();
+                    }
+                }
+            } catch (IOException err) {
+                // Unreadable parts count as empty
+            }
+            for (SizeTask subtask : subtasks) {
+                size += subtask.join();
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Applies a change set in as few sdkmanager launches as the concurrency allows.
+ * Removals go first as a single job; the packages to install are then packed
+ * into at most {@code concurrency} jobs, one sdkmanager launch each, which
+ * download and unpack at the same time.
+ * <p>
+ * Packages whose target directories overlap (one is the same as, or inside,
+ * the other) always share a job, so sdkmanager never has two processes
+ * writing to the same part of the SDK tree.
+ * <p>
+ * Parallel jobs are off by default. Concurrent sdkmanager processes on one SDK
+ * still share {@code .temp} and {@code .downloadIntermediates}, and without
+ * repository metadata two jobs may both pull in the same dependency, such as
+ * the emulator, platform-tools or the patcher. Raise
+ * {@value #CONCURRENCY_PROPERTY} only for change sets known not to do that.
+ */
+public class InstallScheduler {
+
+    public static final String CONCURRENCY_PROPERTY = "androidgui.install.concurrency";
+    private static final int DEFAULT_CONCURRENCY = 1;
+
+    public interface Listener {
+        /**
+         * @param packageId the package the job is working on, e.g.
+         *                  {@code "emulator and 2 more"} for a job of three, or null
+         *                  for the removal job
+         */
+        void jobProgress(String packageId, int percent, String status);
+
+        void jobFinished(String packageId, boolean success, String message);
+
+        /**
+         * @param percent progress of the whole change set, finished jobs counting as 100
+         * @param finished number of jobs done so far
+         * @param total number of jobs in the change set
+         */
+        void aggregateProgress(int percent, int finished, int total);
+    }
+
+    private final File sdkPath;
+    private final int concurrency;
+    private final List<AndroidSDK> active = new ArrayList<AndroidSDK>();
+    private volatile boolean cancelled;
+    private OperationLog log;
+    private volatile ChangeReport report = new ChangeReport();
+
+    public InstallScheduler(File sdkPath) {
+        this(sdkPath, defaultConcurrency());
+    }
+
+    public InstallScheduler(File sdkPath, int concurrency) {
+        this.sdkPath = sdkPath;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * @return the value of the {@value #CONCURRENCY_PROPERTY} system property, or 1
+     */
+    public static int defaultConcurrency() {
+        return Integer.getInteger(CONCURRENCY_PROPERTY, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Keeps the output of every job, see {@link AndroidSDK#setLog}.
+     */
+    public void setLog(OperationLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Runs the change set and blocks until every job has finished.
+     *
+     * @return true if every job succeeded
+     */
+    public boolean apply(String[] removes, String[] installs, Listener listener) {
+        List<String[]> groups = new ArrayList<String[]>(installs.length);
+        for (String id : installs) {
+            groups.add(new String[] { id });
+        }
+        return apply(removes, groups, listener);
+    }
+
+    /**
+     * Runs the change set and blocks until every job has finished.
+     *
+     * @param groups packages to install that must share a job, e.g. a package and
+     *               the dependencies it needs; see {@link #packJobs}
+     * @return true if every job succeeded
+     */
+    public boolean apply(String[] removes, List<String[]> groups, Listener listener) {
+        List<String[]> installs = packJobs(groups, concurrency);
+        Run run = new Run(listener, installs.size() + (removes.length > 0 ? 1 : 0));
+        cancelled = false;
+        report = new ChangeReport();
+        if (removes.length > 0) {
+            run.execute(new Job(null, removes));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, installs.size()),
+                SdkTaskExecutor.defaultThreadFactory());
+        try {
+            List<Job> pending = new ArrayList<Job>();
+            for (String[] packages : installs) {
+                pending.add(new Job(label(packages), packages));
+            }
+            run.schedule(pending, pool, concurrency);
+        } finally {
+            pool.shutdown();
+        }
+        return run.failures == 0;
+    }
+
+    /**
+     * Packs groups of packages into at most {@code jobs} install jobs. Groups
+     * whose target directories overlap are merged first; the rest are spread
+     * largest first over the job with the fewest packages, keeping each group's
+     * order.
+     *
+     * @return the packages of each job
+     */
+    public static List<String[]> packJobs(List<String[]> groups, int jobs) {
+        List<List<String>> merged = new ArrayList<List<String>>();
+        for (String[] group : groups) {
+            List<String> target = new ArrayList<String>(Arrays.asList(group));
+            Iterator<List<String>> iterator = merged.iterator();
+            while (iterator.hasNext()) {
+                List<String> other = iterator.next();
+                if (overlaps(target, other)) {
+                    other.addAll(target);
+                    target = other;
+                    iterator.remove();
+                }
+            }
+            merged.add(target);
+        }
+        merged.sort((a, b) -> b.size() - a.size());
+        int count = Math.min(Math.max(1, jobs), merged.size());
+        List<List<String>> packed = new ArrayList<List<String>>(count);
+        for (int i = 0; i < count; i++) {
+            packed.add(new ArrayList<String>());
+        }
+        for (List<String> group : merged) {
+            List<String> smallest = packed.get(0);
+            for (List<String> job : packed) {
+                if (job.size() < smallest.size()) {
+                    smallest = job;
+                }
+            }
+            smallest.addAll(group);
+        }
+        List<String[]> result = new ArrayList<String[]>(count);
+        for (List<String> job : packed) {
+            result.add(job.toArray(new String[0]));
+        }
+        return result;
+    }
+
+    private static boolean overlaps(List<String> packages, List<String> others) {
+        for (String id : packages) {
+            for (String other : others) {
+                if (overlaps(targetDirectory(id), targetDirectory(other))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean overlaps(String directory, String other) {
+        return directory.startsWith(other) || other.startsWith(directory);
+    }
+
+    private static String label(String[] packages) {
+        return packages.length == 1 ? packages[0] : packages[0] + " and " + (packages.length - 1) + " more";
+    }
+
+    /**
+     * @return what sdkmanager reported installing and removing during the last
+     *         {@link #apply}
+     */
+    public ChangeReport getReport() {
+        return report;
+    }
+
+    /**
+     * Stops the running jobs and drops the ones that have not started yet.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (active) {
+            for (AndroidSDK sdk : active) {
+                sdk.cancel();
+            }
+        }
+    }
+
+    /**
+     * @return the directory a package is installed to, relative to the SDK root
+     */
+    static String targetDirectory(String packageId) {
+        return packageId.replace(';', '/') + "/";
+    }
+
+    private class Job {
+        final String packageId;
+        final String[] packages;
+        final String[] directories;
+
+        /**
+         * @param packageId the job's label, null for the removal job, which
+         *                  overlaps every other
+         */
+        Job(String packageId, String[] packages) {
+            this.packageId = packageId;
+            this.packages = packages;
+            this.directories = new String[packageId == null ? 1 : packages.length];
+            for (int i = 0; i < directories.length; i++) {
+                directories[i] = packageId == null ? "" : targetDirectory(packages[i]);
+            }
+        }
+
+        boolean overlaps(Job other) {
+            for (String directory : directories) {
+                for (String otherDirectory : other.directories) {
+                    if (InstallScheduler.overlaps(directory, otherDirectory)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private class Run {
+        final Listener listener;
+        final int total;
+        final Map<Job, Integer> progress = new LinkedHashMap<Job, Integer>();
+        final List<Job> running = new ArrayList<Job>();
+        int finished;
+        int failures;
+
+        Run(Listener listener, int total) {
+            this.listener = listener;
+            this.total = total;
+        }
+
+        /**
+         * Starts every pending job whose directory is free while slots are
+         * available, then waits for a job to finish and tries again.
+         */
+        synchronized void schedule(List<Job> pending, ExecutorService pool, int slots) {
+            while (!pending.isEmpty() || !running.isEmpty()) {
+                if (cancelled && !pending.isEmpty()) {
+                    failures += pending.size();
+                    pending.clear();
+                }
+                Iterator<Job> iterator = pending.iterator();
+                while (running.size() < slots && iterator.hasNext()) {
+                    Job job = iterator.next();
+                    if (isFree(job)) {
+                        iterator.remove();
+                        running.add(job);
+                        pool.execute(() -> execute(job));
+                    }
+                }
+                try {
+                    wait();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private boolean isFree(Job job) {
+            for (Job other : running) {
+                if (job.overlaps(other)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void execute(Job job) {
+            JobEvents events = new JobEvents(job);
+            AndroidSDK sdk = new AndroidSDK(sdkPath, events);
+            sdk.setLog(log);
+            synchronized (active) {
+                active.add(sdk);
+            }
+            if (cancelled) {
+                events.onError("Cancelled");
+            } else if (job.packageId == null) {
+                sdk.removePackages(job.packages);
+            } else {
+                sdk.installPackages(job.packages);
+            }
+            synchronized (active) {
+                active.remove(sdk);
+            }
+            listener.jobFinished(job.packageId, !events.failed, events.message);
+            synchronized (this) {
+                running.remove(job);
+                progress.put(job, 100);
+                finished++;
+                if (events.failed) {
+                    failures++;
+                }
+                notifyAll();
+            }
+            update(job, 100);
+        }
+
+        private void update(Job job, int percent) {
+            int aggregate;
+            int done;
+            synchronized (this) {
+                progress.put(job, percent);
+                long sum = 0;
+                for (int value : progress.values()) {
+                    sum += value;
+                }
+                aggregate = (int) (sum / Math.max(1, total));
+                done = finished;
+            }
+            listener.aggregateProgress(aggregate, done, total);
+        }
+
+        /**
+         * Follows one job's sdkmanager run.
+         */
+        private class JobEvents implements SdkListener {
+            final Job job;
+            int percent;
+            String message = "";
+            boolean failed;
+
+            JobEvents(Job job) {
+                this.job = job;
+            }
+
+            @Override
+            public void onProgress(int percent) {
+                this.percent = percent;
+                update(job, percent);
+            }
+
+            @Override
+            public void onStatus(String status) {
+                // sdkmanager prints the percentage and its status text on one line
+                message = status;
+                listener.jobProgress(job.packageId, percent, status);
+                report.accept(status);
+            }
+
+            @Override
+            public void onOutput(String line) {
+                report.accept(line);
+            }
+
+            @Override
+            public void onError(String message) {
+                failed = true;
+                this.message = message;
+            }
+        }
+    }
+}
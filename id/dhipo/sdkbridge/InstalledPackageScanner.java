@@ -0,0 +1,253 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Finds installed packages by reading the {@code package.xml} every package
+ * leaves in its directory, instead of asking sdkmanager. The SDK tree is
+ * walked in parallel on the common fork-join pool and each manifest is read
+ * with a streaming parser, so a full SDK is scanned in milliseconds.
+ * <p>
+ * The rows match the ones sdkmanager prints in its Installed packages table.
+ */
+public class InstalledPackageScanner {
+
+    public static final String PACKAGE_XML = "package.xml";
+    // system-images;android-34;google_apis;x86_64 is the deepest layout in use
+    static final int MAX_DEPTH = 5;
+    private static final XMLInputFactory XML_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final File sdkPath;
+
+    public InstalledPackageScanner(File sdkPath) {
+        this.sdkPath = sdkPath.getAbsoluteFile();
+    }
+
+    /**
+     * @return one installed row per package found, ordered by package path
+     */
+    public List<PackageRow> scan() {
+        List<PackageRow> rows = ForkJoinPool.commonPool().invoke(new ScanTask(sdkPath, "", 0));
+        Collections.sort(rows, Comparator.comparing(PackageRow::getId));
+        return rows;
+    }
+
+    /**
+     * Scans the SDK and sends the rows to the listener on the calling thread.
+     *
+     * @return the number of packages found
+     */
+    public int scan(SdkListener listener) {
+        List<PackageRow> rows = scan();
+        for (int i = 0; i < rows.size(); i++) {
+            listener.onPackage(rows.get(i));
+        }
+        return rows.size();
+    }
+
+    /**
+     * Reads a single package directory.
+     *
+     * @param directory a directory that contains a package.xml
+     * @return the installed row, or null if there is no readable package.xml
+     */
+    public PackageRow readPackage(File directory) {
+        return readPackage(directory, relativeLocation(directory));
+    }
+
+    private String relativeLocation(File directory) {
+        String root = sdkPath.getPath();
+        String path = directory.getAbsolutePath();
+        String relative = path.startsWith(root) ? path.substring(root.length()) : path;
+        while (relative.startsWith(File.separator)) {
+            relative = relative.substring(1);
+        }
+        return relative.replace(File.separatorChar, '/') + "/";
+    }
+
+    private static PackageRow readPackage(File directory, String location) {
+        File manifest = new File(directory, PACKAGE_XML);
+        if (!manifest.isFile()) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(manifest))) {
+            return readManifest(in, location);
+        } catch (IOException | XMLStreamException err) {
+            return null;
+        }
+    }
+
+    /**
+     * Streams a package.xml, stopping as soon as the local package element has
+     * been read; the license text that precedes it is skipped without being
+     * collected.
+     */
+    static PackageRow readManifest(InputStream in, String location) throws XMLStreamException {
+        XMLStreamReader xml = XML_FACTORY.createXMLStreamReader(in);
+        try {
+            String path = null;
+            String displayName = "";
+            int[] revision = new int[4];
+            int precision = 0;
+            boolean inRevision = false;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    switch (name) {
+                    case "localPackage":
+                        path = xml.getAttributeValue(null, "path");
+                        break;
+                    case "revision":
+                        inRevision = path != null;
+                        break;
+                    case "major":
+                    case "minor":
+                    case "micro":
+                    case "preview":
+                        if (inRevision) {
+                            int field = revisionField(name);
+                            revision[field] = Integer.parseInt(xml.getElementText().trim());
+                            precision = Math.max(precision, Math.min(field, 2) + 1);
+                        }
+                        break;
+                    case "display-name":
+                        if (path != null) {
+                            displayName = xml.getElementText().trim();
+                        }
+                        break;
+                    default:
+                        break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (name.equals("revision")) {
+                        inRevision = false;
+                    } else if (name.equals("localPackage")) {
+                        break;
+                    }
+                }
+            }
+            if (path == null) {
+                return null;
+            }
+            return PackageRow.installed(path, formatRevision(revision, precision), displayName, location);
+        } catch (NumberFormatException err) {
+            return null;
+        } finally {
+            xml.close();
+        }
+    }
+
+    static int revisionField(String name) {
+        switch (name) {
+        case "major":
+            return 0;
+        case "minor":
+            return 1;
+        case "micro":
+            return 2;
+        default:
+            return 3;
+        }
+    }
+
+    /**
+     * Formats a revision the way sdkmanager prints it: only the components that
+     * were given, and a preview as " rcN".
+     */
+    static String formatRevision(int[] revision, int precision) {
+        StringBuilder text = new StringBuilder();
+        text.append(revision[0]);
+        for (int i = 1; i < precision; i++) {
+            text.append('.').append(revision[i]);
+        }
+        if (revision[3] > 0) {
+            text.append(" rc").append(revision[3]);
+        }
+        return text.toString();
+    }
+
+    private static class ScanTask extends RecursiveTask<List<PackageRow>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final File directory;
+        private final String location;
+        private final int depth;
+
+        ScanTask(File directory, String location, int depth) {
+            this.directory = directory;
+            this.location = location;
+            this.depth = depth;
+        }
+
+        @Override
+        protected List<PackageRow> compute() {
+            List<PackageRow> rows = new ArrayList<PackageRow>();
+            if (depth > 0) {
+                PackageRow row = readPackage(directory, location);
+                if (row != null) {
+                    // Packages do not nest, no need to look further down
+                    rows.add(row);
+                    return rows;
+                }
+            }
+            if (depth >= MAX_DEPTH) {
+                return rows;
+            }
+            File[] children = directory.listFiles();
+            if (children == null) {
+                return rows;
+            }
+            List<ScanTask> tasks = new ArrayList<ScanTask>();
+            for (File child : children) {
+                // Skips .temp, .downloadIntermediates and friends
+                if (!child.getName().startsWith(".") && child.isDirectory()) {
+                    tasks.add(new ScanTask(child, location + child.getName() + "/", depth + 1));
+                }
+            }
+            for (ScanTask task : invokeAll(tasks)) {
+                rows.addAll(task.join());
+            }
+            return rows;
+        }
+    }
+}
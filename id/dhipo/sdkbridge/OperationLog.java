@@ -0,0 +1,202 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Keeps the most recent sdkmanager output lines, each with the time it was
+ * printed and the operation that printed it, so a failed install still has its
+ * output to look at afterwards.
+ * <p>
+ * The log is a ring buffer with two limits: a number of lines and a number of
+ * characters over all lines. Whichever is reached first evicts the oldest
+ * lines, and overlong lines are cut, so memory stays flat however long the
+ * application runs. Every line gets a sequence number that keeps counting up
+ * as lines are evicted, which lets views address lines without copying them.
+ * Safe to use from any thread.
+ */
+public class OperationLog {
+
+    public static final int DEFAULT_MAX_LINES = 20000;
+    public static final int DEFAULT_MAX_CHARS = 2 * 1024 * 1024;
+    public static final int MAX_LINE_LENGTH = 2000;
+
+    /**
+     * One line of output.
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final long time;
+        private final String operation;
+        private final String line;
+
+        Entry(long sequence, long time, String operation, String line) {
+            this.sequence = sequence;
+            this.time = time;
+            this.operation = operation;
+            this.line = line;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return when the line was logged, in milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public String getLine() {
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            return Instant.ofEpochMilli(time) + "\t" + operation + "\t" + line;
+        }
+    }
+
+    private final int maxLines;
+    private final long maxChars;
+    private final long[] times;
+    private final String[] operations;
+    private final String[] lines;
+    // Slot of the oldest line, number of lines held and their total length
+    private int head;
+    private int count;
+    private long chars;
+    // Sequence number of the oldest line held
+    private long first;
+
+    public OperationLog() {
+        this(DEFAULT_MAX_LINES, DEFAULT_MAX_CHARS);
+    }
+
+    public OperationLog(int maxLines, long maxChars) {
+        this.maxLines = Math.max(1, maxLines);
+        this.maxChars = Math.max(MAX_LINE_LENGTH, maxChars);
+        this.times = new long[this.maxLines];
+        this.operations = new String[this.maxLines];
+        this.lines = new String[this.maxLines];
+    }
+
+    /**
+     * Adds a line, evicting the oldest lines if the log is full.
+     *
+     * @param operation what was running, e.g. {@code "install platforms;android-28"};
+     *                  callers pass the same string for every line of a run
+     */
+    public synchronized void append(String operation, String line) {
+        if (line.length() > MAX_LINE_LENGTH) {
+            line = line.substring(0, MAX_LINE_LENGTH) + "…";
+        }
+        while (count == maxLines || (count > 0 && chars + line.length() > maxChars)) {
+            evict();
+        }
+        int slot = (head + count) % maxLines;
+        times[slot] = System.currentTimeMillis();
+        operations[slot] = operation;
+        lines[slot] = line;
+        chars += line.length();
+        count++;
+    }
+
+    private void evict() {
+        chars -= lines[head].length();
+        operations[head] = null;
+        lines[head] = null;
+        head = (head + 1) % maxLines;
+        count--;
+        first++;
+    }
+
+    /**
+     * @return the sequence number of the oldest line held
+     */
+    public synchronized long getFirstSequence() {
+        return first;
+    }
+
+    /**
+     * @return the sequence number the next line will get
+     */
+    public synchronized long getEndSequence() {
+        return first + count;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return the line with the given sequence number, or null if it has been
+     *         evicted or not logged yet
+     */
+    public synchronized Entry get(long sequence) {
+        if (sequence < first || sequence >= first + count) {
+            return null;
+        }
+        int slot = (int) ((head + (sequence - first)) % maxLines);
+        return new Entry(sequence, times[slot], operations[slot], lines[slot]);
+    }
+
+    public synchronized void clear() {
+        while (count > 0) {
+            evict();
+        }
+    }
+
+    /**
+     * Writes the lines held, oldest first, one per line as time, operation and
+     * text separated by tabs.
+     */
+    public void export(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeTo(writer);
+        }
+    }
+
+    /**
+     * Writes the lines held when the call starts. Lines are fetched one at a time
+     * so appending never waits for the writer; any evicted in the meantime are
+     * skipped.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        long end = getEndSequence();
+        for (long sequence = getFirstSequence(); sequence < end; sequence++) {
+            Entry entry = get(sequence);
+            if (entry != null) {
+                writer.write(entry.toString());
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A prefix index over package ids and display names. Ids are split into their
+ * {@code ;} separated segments, and those again on {@code -}, {@code _} and
+ * {@code .}; names are split into words. A query matches a package when every
+ * one of its terms is the prefix of one of the package's tokens, so
+ * {@code "sys 34 x86"} finds {@code system-images;android-34;google_apis;x86_64}.
+ * <p>
+ * Packages can be added from any thread while queries run, e.g. from the thread
+ * reading sdkmanager's output.
+ */
+public class PackageIndex {
+
+    private final ConcurrentSkipListMap<String, Set<String>> tokens = new ConcurrentSkipListMap<String, Set<String>>();
+    private final ConcurrentHashMap<String, String[]> packages = new ConcurrentHashMap<String, String[]>();
+    private final AtomicInteger version = new AtomicInteger();
+
+    public void add(PackageRow row) {
+        add(row.getId(), row.getDescription());
+    }
+
+    public void add(String id, String name) {
+        String[] known = packages.get(id);
+        String[] found = tokenize(id, name);
+        if (known != null && containsAll(known, found)) {
+            return;
+        }
+        if (known != null) {
+            Set<String> merged = new HashSet<String>();
+            Collections.addAll(merged, known);
+            Collections.addAll(merged, found);
+            found = merged.toArray(new String[0]);
+        }
+        for (String token : found) {
+            tokens.computeIfAbsent(token, (key) -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        packages.put(id, found);
+        version.incrementAndGet();
+    }
+
+    public void clear() {
+        tokens.clear();
+        packages.clear();
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return a number that changes whenever packages are added or removed, to tell
+     *         whether earlier results may be stale
+     */
+    public int getVersion() {
+        return version.get();
+    }
+
+    public int size() {
+        return packages.size();
+    }
+
+    /**
+     * Finds the packages matching every term of the query. Only the term with the
+     * fewest candidates is looked up in full; the other terms are checked against
+     * the tokens of those candidates.
+     *
+     * @return the matching ids, or null if the query has no terms and so matches
+     *         everything
+     */
+    public Set<String> search(String query) {
+        String[] terms = splitQuery(query);
+        if (terms.length == 0) {
+            return null;
+        }
+        Collection<Set<String>> narrowest = null;
+        int fewest = Integer.MAX_VALUE;
+        for (String term : terms) {
+            Collection<Set<String>> candidates = tokens.subMap(term, true, term + Character.MAX_VALUE, true)
+                    .values();
+            int count = 0;
+            for (Set<String> ids : candidates) {
+                count += ids.size();
+                if (count >= fewest) {
+                    break;
+                }
+            }
+            if (count < fewest) {
+                fewest = count;
+                narrowest = candidates;
+            }
+        }
+        Set<String> result = new HashSet<String>(Math.max(16, fewest * 2));
+        for (Set<String> ids : narrowest) {
+            for (String id : ids) {
+                if (terms.length == 1 || matches(id, terms)) {
+                    result.add(id);
+                }
+            }
+        }
+        return result;
+    }
+
+    public boolean matches(String id, String[] terms) {
+        String[] known = packages.get(id);
+        if (known == null) {
+            return false;
+        }
+        for (String term : terms) {
+            boolean found = false;
+            for (int i = 0; i < known.length && !found; i++) {
+                found = known[i].startsWith(term);
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a query into lower case terms on white space and {@code ;}, so a full
+     * package id can be pasted as is.
+     */
+    public static String[] splitQuery(String query) {
+        List<String> terms = new ArrayList<String>();
+        split(query.toLowerCase(Locale.ROOT), false, terms);
+        return terms.toArray(new String[0]);
+    }
+
+    static String[] tokenize(String id, String name) {
+        Set<String> found = new HashSet<String>();
+        String lowerId = id.toLowerCase(Locale.ROOT);
+        int start = 0;
+        while (start <= lowerId.length()) {
+            int end = lowerId.indexOf(';', start);
+            if (end < 0) {
+                end = lowerId.length();
+            }
+            String segment = lowerId.substring(start, end);
+            if (!segment.isEmpty()) {
+                found.add(segment);
+                split(segment, true, found);
+            }
+            start = end + 1;
+        }
+        if (name != null) {
+            split(name.toLowerCase(Locale.ROOT), true, found);
+        }
+        return found.toArray(new String[0]);
+    }
+
+    /**
+     * Adds the words of the text to the collection. Words are separated by
+     * anything that is neither a letter nor a digit; the ';' of package ids is
+     * always a separator and '-', '_' and '.' are when fine is set.
+     */
+    private static void split(String text, boolean fine, Collection<String> words) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            boolean separator = fine ? !Character.isLetterOrDigit(c)
+                    : Character.isWhitespace(c) || c == ';';
+            if (separator) {
+                if (start >= 0) {
+                    words.add(text.substring(start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+    }
+
+    private static boolean containsAll(String[] known, String[] found) {
+        outer: for (String token : found) {
+            for (String existing : known) {
+                if (existing.equals(token)) {
+                    continue outer;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,221 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the package rows of the last successful {@code sdkmanager --list} of an
+ * SDK root on disk, so the table can be filled before sdkmanager has even
+ * started.
+ * <p>
+ * An entry is only trusted while the SDK root looks the way it did when the
+ * listing was taken: the fingerprint covers the names and modification times of
+ * the directories up to three levels below the root (hidden ones excluded),
+ * which is where sdkmanager creates, replaces or deletes a package directory on
+ * install and uninstall.
+ */
+public class PackageListCache {
+
+    private static final int MAGIC = 0x41475043; // "AGPC"
+    private static final int FORMAT = 2;
+    private static final int FINGERPRINT_DEPTH = 3;
+
+    private final File sdkPath;
+    private final File cacheFile;
+
+    public PackageListCache(File sdkPath) {
+        this(sdkPath, defaultDirectory());
+    }
+
+    public PackageListCache(File sdkPath, File cacheDirectory) {
+        this.sdkPath = sdkPath.getAbsoluteFile();
+        String key = Integer.toHexString(this.sdkPath.getPath().hashCode());
+        this.cacheFile = new File(cacheDirectory, "packages-" + key + ".bin");
+    }
+
+    /**
+     * @return the per-user cache directory, following the platform convention
+     */
+    public static File defaultDirectory() {
+        String osname = System.getProperty("os.name");
+        String localAppData = System.getenv("LOCALAPPDATA");
+        if (osname.contains("Windows") && localAppData != null) {
+            return new File(new File(localAppData, "AndroidGUI"), "cache");
+        }
+        String xdgCache = System.getenv("XDG_CACHE_HOME");
+        if (xdgCache != null && !xdgCache.isEmpty()) {
+            return new File(xdgCache, "androidgui");
+        }
+        return new File(new File(System.getProperty("user.home"), ".cache"), "androidgui");
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Reads the cached rows and passes them to the listener, in the order they
+     * were recorded. Nothing is sent when there is no entry, when it cannot be
+     * read or when the installed packages have changed since it was written.
+     *
+     * @param listener receives the cached rows
+     * @return the number of rows replayed
+     */
+    public int replay(SdkListener listener) {
+        List<PackageRow> rows = load();
+        for (int i = 0; i < rows.size(); i++) {
+            listener.onPackage(rows.get(i));
+        }
+        return rows.size();
+    }
+
+    /**
+     * @return the cached rows, or an empty list if the entry is missing or stale
+     */
+    public List<PackageRow> load() {
+        List<PackageRow> rows = new ArrayList<PackageRow>();
+        if (!cacheFile.isFile()) {
+            return rows;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(new FileInputStream(cacheFile))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !sdkPath.getPath().equals(in.readUTF())
+                    || in.readLong() != fingerprint()) {
+                return rows;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                rows.add(readRow(in));
+            }
+        } catch (IOException err) {
+            rows.clear();
+        }
+        return rows;
+    }
+
+    /**
+     * Replaces the entry with the rows of a listing that has just completed.
+     *
+     * @param rows the rows in the order they were reported
+     */
+    public void store(List<PackageRow> rows) throws IOException {
+        File directory = cacheFile.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + directory);
+        }
+        File temp = new File(directory, cacheFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(sdkPath.getPath());
+            out.writeLong(fingerprint());
+            out.writeInt(rows.size());
+            for (PackageRow row : rows) {
+                writeRow(out, row);
+            }
+        }
+        Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void invalidate() {
+        cacheFile.delete();
+    }
+
+    /**
+     * Hashes the names and modification times of the directories near the SDK
+     * root. This is a few hundred stat calls at most, far cheaper than reading
+     * every package.xml.
+     */
+    long fingerprint() {
+        return fingerprint(sdkPath, 0, 1125899906842597L);
+    }
+
+    private static long fingerprint(File directory, int depth, long hash) {
+        hash = 31 * hash + directory.getName().hashCode();
+        if (depth > 0) {
+            // The root itself is touched by every sdkmanager run (.temp, .knownPackages)
+            hash = 31 * hash + directory.lastModified();
+        }
+        if (depth >= FINGERPRINT_DEPTH) {
+            return hash;
+        }
+        String[] names = directory.list();
+        if (names == null) {
+            return hash;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            File child = new File(directory, name);
+            if (!name.startsWith(".") && child.isDirectory()) {
+                hash = fingerprint(child, depth + 1, hash);
+            }
+        }
+        return hash;
+    }
+
+    private static void writeRow(DataOutputStream out, PackageRow row) throws IOException {
+        out.writeByte(row.getKind().ordinal());
+        out.writeUTF(row.getId());
+        switch (row.getKind()) {
+        case INSTALLED:
+            out.writeUTF(row.getVersion());
+            out.writeUTF(row.getDescription());
+            out.writeUTF(row.getLocation());
+            break;
+        case AVAILABLE:
+            out.writeUTF(row.getVersion());
+            out.writeUTF(row.getDescription());
+            break;
+        default:
+            out.writeUTF(row.getInstalledVersion());
+            out.writeUTF(row.getVersion());
+            break;
+        }
+    }
+
+    private static PackageRow readRow(DataInputStream in) throws IOException {
+        int kind = in.readByte();
+        String id = in.readUTF();
+        switch (kind) {
+        case 0:
+            return PackageRow.installed(id, in.readUTF(), in.readUTF(), in.readUTF());
+        case 1:
+            return PackageRow.available(id, in.readUTF(), in.readUTF());
+        case 2:
+            return PackageRow.update(id, in.readUTF(), in.readUTF());
+        default:
+            throw new IOException("Corrupt package list cache");
+        }
+    }
+}
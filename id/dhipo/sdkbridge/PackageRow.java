@@ -0,0 +1,107 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+/**
+ * One row of a package table printed by sdkmanager, or the equivalent read
+ * from disk or from the cache. Immutable.
+ */
+public final class PackageRow {
+
+    public enum Kind {
+        /** From the Installed packages table: version is the installed one */
+        INSTALLED,
+        /** From the Available Packages table: version is the latest one */
+        AVAILABLE,
+        /** From the Available Updates table: both versions are known, description is not */
+        UPDATE
+    }
+
+    private final Kind kind;
+    private final String id;
+    private final String version;
+    private final String installedVersion;
+    private final String description;
+    private final String location;
+
+    private PackageRow(Kind kind, String id, String version, String installedVersion, String description,
+            String location) {
+        this.kind = kind;
+        this.id = id;
+        this.version = version;
+        this.installedVersion = installedVersion;
+        this.description = description;
+        this.location = location;
+    }
+
+    public static PackageRow installed(String id, String version, String description, String location) {
+        return new PackageRow(Kind.INSTALLED, id, version, version, description, location);
+    }
+
+    public static PackageRow available(String id, String version, String description) {
+        return new PackageRow(Kind.AVAILABLE, id, version, "", description, "");
+    }
+
+    public static PackageRow update(String id, String installedVersion, String availableVersion) {
+        return new PackageRow(Kind.UPDATE, id, availableVersion, installedVersion, "", "");
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the package path, e.g. {@code platforms;android-28}
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the installed version for INSTALLED rows, the available one otherwise
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the installed version, empty for AVAILABLE rows
+     */
+    public String getInstalledVersion() {
+        return installedVersion;
+    }
+
+    /**
+     * @return the display name, empty for UPDATE rows
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return the directory relative to the SDK root, only known for INSTALLED rows
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + id + " " + version;
+    }
+}
@@ -0,0 +1,146 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+/**
+ * Keeps the latest progress value and status text of a running operation so a
+ * consumer can pick them up at its own pace instead of reacting to every line
+ * sdkmanager prints. Writers only overwrite two fields; the rate and the
+ * estimated time left are worked out when a sample is taken.
+ * <p>
+ * sdkmanager reports a percentage and nothing else, so the rate is in percent
+ * per second. It is measured over windows of at least {@link #RATE_WINDOW_MS}
+ * and smoothed, which keeps the estimate from jumping around on every tick.
+ */
+public class ProgressSampler {
+
+    public static final long RATE_WINDOW_MS = 500;
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * What the operation looked like when it was sampled.
+     */
+    public static final class Sample {
+        private final int percent;
+        private final String status;
+        private final double rate;
+        private final long etaMillis;
+
+        Sample(int percent, String status, double rate, long etaMillis) {
+            this.percent = percent;
+            this.status = status;
+            this.rate = rate;
+            this.etaMillis = etaMillis;
+        }
+
+        /**
+         * @return the last percentage reported, or -1 if none was
+         */
+        public int getPercent() {
+            return percent;
+        }
+
+        /**
+         * @return the last status text reported, or null if none was
+         */
+        public String getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the smoothed progress rate in percent per second, or 0 if not known
+         *         yet
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * @return the estimated time left in milliseconds, or -1 if not known yet
+         */
+        public long getEtaMillis() {
+            return etaMillis;
+        }
+    }
+
+    private int percent;
+    private String status;
+    private boolean changed;
+    // Rate state, only touched by sample()
+    private int anchorPercent;
+    private long anchorNanos;
+    private double rate;
+
+    public ProgressSampler() {
+        reset();
+    }
+
+    public synchronized void setPercent(int percent) {
+        if (percent != this.percent) {
+            this.percent = percent;
+            changed = true;
+        }
+    }
+
+    public synchronized void setStatus(String status) {
+        if (status != null && !status.equals(this.status)) {
+            this.status = status;
+            changed = true;
+        }
+    }
+
+    /**
+     * Forgets the current operation, including anything not sampled yet.
+     */
+    public synchronized void reset() {
+        percent = -1;
+        status = null;
+        changed = false;
+        anchorPercent = -1;
+        anchorNanos = 0;
+        rate = 0;
+    }
+
+    /**
+     * Takes a sample if anything was reported since the last one.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the sample, or null if nothing changed
+     */
+    public synchronized Sample sample(long now) {
+        if (!changed) {
+            return null;
+        }
+        changed = false;
+        if (percent >= 0) {
+            if (anchorPercent < 0 || percent < anchorPercent) {
+                // First value, or a new progress bar has started.
+                anchorPercent = percent;
+                anchorNanos = now;
+                rate = 0;
+            } else if (now - anchorNanos >= RATE_WINDOW_MS * 1000000L) {
+                double measured = (percent - anchorPercent) * 1e9 / (now - anchorNanos);
+                rate = rate == 0 ? measured : rate + SMOOTHING * (measured - rate);
+                anchorPercent = percent;
+                anchorNanos = now;
+            }
+        }
+        long eta = rate > 0 && percent >= 0 ? (long) ((100 - percent) * 1000 / rate) : -1;
+        return new Sample(percent, status, rate, eta);
+    }
+}
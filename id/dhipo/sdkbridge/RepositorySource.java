@@ -0,0 +1,280 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the available packages straight from the repository manifests that
+ * sdkmanager itself downloads ({@code repository2-*.xml}, the add-on and
+ * system image manifests, and the {@code addons_list-*.xml} that points to
+ * them), without launching sdkmanager. Manifests are streamed with StAX and
+ * every remote package becomes an {@link PackageRow.Kind#AVAILABLE} row, the
+ * same as a row of sdkmanager's Available Packages table. Obsolete packages are
+ * left out, as sdkmanager leaves them out of its listing. The dependencies of
+ * each package are kept as well.
+ * <p>
+ * Manifests may be given as URLs or local files. An addons list is followed to
+ * the manifests it names, resolved against its own location.
+ */
+public class RepositorySource {
+
+    /**
+     * System property with a comma separated list of manifest URLs or files. When
+     * set, listings are read from these manifests instead of sdkmanager.
+     */
+    public static final String PROPERTY = "androidgui.repository";
+    public static final String DEFAULT_REPOSITORY = "https://dl.google.com/android/repository/";
+    private static final String STABLE_CHANNEL = "stable";
+    private static final int TIMEOUT_MS = 30000;
+    private static final XMLInputFactory XML_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final List<URL> manifests;
+    private boolean includePreviews;
+    private final ConcurrentHashMap<String, List<String>> dependencies = new ConcurrentHashMap<String, List<String>>();
+
+    public RepositorySource(List<URL> manifests) {
+        this.manifests = new ArrayList<URL>(manifests);
+    }
+
+    /**
+     * @return the source named by the {@value #PROPERTY} system property, or null
+     *         if it is not set
+     */
+    public static RepositorySource fromProperty() {
+        String value = System.getProperty(PROPERTY);
+        return value == null || value.trim().isEmpty() ? null : fromLocations(value);
+    }
+
+    /**
+     * @param locations a comma separated list of URLs or local files
+     * @throws IllegalArgumentException if a location is not a valid URL
+     */
+    public static RepositorySource fromLocations(String locations) {
+        List<URL> urls = new ArrayList<URL>();
+        for (String location : locations.split(",")) {
+            if (!location.trim().isEmpty()) {
+                try {
+                    urls.add(toUrl(location.trim()));
+                } catch (MalformedURLException err) {
+                    throw new IllegalArgumentException(location + ": " + err.getMessage(), err);
+                }
+            }
+        }
+        return new RepositorySource(urls);
+    }
+
+    /**
+     * @param location a URL, or the path of a local file
+     */
+    public static URL toUrl(String location) throws MalformedURLException {
+        return location.contains("://") ? new URL(location) : new File(location).toURI().toURL();
+    }
+
+    /**
+     * Also lists packages from the preview, beta and canary channels. Only the
+     * stable channel is listed by default, like sdkmanager does.
+     */
+    public void setIncludePreviews(boolean includePreviews) {
+        this.includePreviews = includePreviews;
+    }
+
+    /**
+     * Reads every manifest and sends one available row per package to the
+     * listener, on the calling thread.
+     *
+     * @return the number of packages found
+     * @throws IOException if a manifest cannot be fetched or is not valid XML
+     */
+    public int read(SdkListener listener) throws IOException {
+        Deque<URL> pending = new ArrayDeque<URL>(manifests);
+        Set<String> visited = new HashSet<String>();
+        int count = 0;
+        while (!pending.isEmpty()) {
+            URL url = pending.poll();
+            if (!visited.add(url.toExternalForm())) {
+                continue;
+            }
+            URLConnection connection = url.openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            try (InputStream in = new BufferedInputStream(connection.getInputStream())) {
+                count += readManifest(in, url, listener, pending);
+            } catch (XMLStreamException err) {
+                throw new IOException(url + ": " + err.getMessage(), err);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the paths of the packages the given package depends on, empty if it
+     *         has none or was not read
+     */
+    public List<String> getDependencies(String packageId) {
+        List<String> found = dependencies.get(packageId);
+        return found == null ? Collections.<String>emptyList() : found;
+    }
+
+    /**
+     * @return the dependencies of every package read so far that has any
+     */
+    public Map<String, List<String>> getDependencies() {
+        return Collections.unmodifiableMap(dependencies);
+    }
+
+    /**
+     * Streams one manifest. Packages are reported as soon as their element ends;
+     * license texts, archives and other details are skipped.
+     *
+     * @param more where the manifests named by an addons list are added
+     */
+    int readManifest(InputStream in, URL base, SdkListener listener, Deque<URL> more) throws XMLStreamException {
+        XMLStreamReader xml = XML_FACTORY.createXMLStreamReader(in);
+        try {
+            Map<String, String> channels = new HashMap<String, String>();
+            int count = 0;
+            String path = null;
+            String displayName = "";
+            String channel = null;
+            boolean obsolete = false;
+            int[] revision = new int[4];
+            int precision = 0;
+            boolean inRevision = false;
+            boolean addonsList = false;
+            boolean root = true;
+            List<String> requires = new ArrayList<String>();
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (root) {
+                        addonsList = name.equals("sdk-addons-list");
+                        root = false;
+                    }
+                    switch (name) {
+                    case "channel":
+                        String id = xml.getAttributeValue(null, "id");
+                        channels.put(id, xml.getElementText().trim());
+                        break;
+                    case "remotePackage":
+                        path = xml.getAttributeValue(null, "path");
+                        displayName = "";
+                        channel = null;
+                        obsolete = Boolean.parseBoolean(xml.getAttributeValue(null, "obsolete"));
+                        revision = new int[4];
+                        precision = 0;
+                        requires = new ArrayList<String>();
+                        break;
+                    case "revision":
+                        inRevision = path != null;
+                        break;
+                    case "major":
+                    case "minor":
+                    case "micro":
+                    case "preview":
+                        if (inRevision) {
+                            int field = InstalledPackageScanner.revisionField(name);
+                            revision[field] = Integer.parseInt(xml.getElementText().trim());
+                            precision = Math.max(precision, Math.min(field, 2) + 1);
+                        }
+                        break;
+                    case "display-name":
+                        if (path != null) {
+                            displayName = xml.getElementText().trim();
+                        }
+                        break;
+                    case "obsolete":
+                        // The element form of the attribute, used by older manifests
+                        if (path != null) {
+                            obsolete = !xml.getElementText().trim().equals("false");
+                        }
+                        break;
+                    case "channelRef":
+                        channel = xml.getAttributeValue(null, "ref");
+                        break;
+                    case "dependency":
+                        if (path != null) {
+                            requires.add(xml.getAttributeValue(null, "path"));
+                        }
+                        break;
+                    case "url":
+                        // One per manifest in an addons list; elsewhere they point to archives
+                        if (addonsList) {
+                            try {
+                                more.add(new URL(base, xml.getElementText().trim()));
+                            } catch (MalformedURLException err) {
+                                // A broken entry does not spoil the rest of the list
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = xml.getLocalName();
+                    if (name.equals("revision")) {
+                        inRevision = false;
+                    } else if (name.equals("remotePackage") && path != null) {
+                        if (!obsolete && (includePreviews || channel == null
+                                || STABLE_CHANNEL.equals(channels.get(channel)))) {
+                            if (!requires.isEmpty()) {
+                                dependencies.put(path, Collections.unmodifiableList(requires));
+                            }
+                            listener.onPackage(PackageRow.available(path,
+                                    InstalledPackageScanner.formatRevision(revision, precision), displayName));
+                            count++;
+                        }
+                        path = null;
+                    }
+                }
+            }
+            return count;
+        } catch (NumberFormatException err) {
+            throw new XMLStreamException("Bad revision: " + err.getMessage(), xml.getLocation(), err);
+        } finally {
+            xml.close();
+        }
+    }
+}
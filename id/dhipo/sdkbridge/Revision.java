@@ -0,0 +1,199 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A package revision as sdkmanager prints it, e.g. {@code 30.0.3},
+ * {@code 30.0.3 rc1} or {@code 2}, with any number of components. Missing
+ * components count as zero, so {@code 2} and {@code 2.0} are the same revision, and a preview comes before
+ * the final release of the same version. Text that does not look like a
+ * revision is kept and compared as text.
+ */
+public final class Revision implements Comparable<Revision> {
+
+    private static final int FINAL = Integer.MAX_VALUE;
+
+    private final String text;
+    private final boolean numeric;
+    // Numeric components without trailing zeros
+    private final int[] parts;
+    // Preview qualifier rank (alpha, beta, rc) and number, FINAL for a release
+    private final int previewRank, preview;
+
+    private Revision(String text, boolean numeric, int[] parts, int count, int previewRank, int preview) {
+        while (count > 0 && parts[count - 1] == 0) {
+            count--;
+        }
+        this.text = text;
+        this.numeric = numeric;
+        this.parts = Arrays.copyOf(parts, count);
+        this.previewRank = previewRank;
+        this.preview = preview;
+    }
+
+    /**
+     * @return the revision, or null for an empty or null string
+     */
+    public static Revision parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        int[] parts = new int[4];
+        int count = 0;
+        int i = 0;
+        int length = trimmed.length();
+        while (true) {
+            int start = i;
+            int value = 0;
+            while (i < length && trimmed.charAt(i) >= '0' && trimmed.charAt(i) <= '9' && i - start < 9) {
+                value = value * 10 + (trimmed.charAt(i) - '0');
+                i++;
+            }
+            if (i == start) {
+                break;
+            }
+            if (count == parts.length) {
+                parts = Arrays.copyOf(parts, count * 2);
+            }
+            parts[count++] = value;
+            if (i < length && trimmed.charAt(i) == '.') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (count == 0) {
+            return new Revision(trimmed, false, parts, 0, FINAL, FINAL);
+        }
+        if (i == length) {
+            return new Revision(trimmed, true, parts, count, FINAL, FINAL);
+        }
+        // A preview such as " rc1", "-rc1", "-alpha02" or "-beta"
+        while (i < length && (trimmed.charAt(i) == ' ' || trimmed.charAt(i) == '-' || trimmed.charAt(i) == '_')) {
+            i++;
+        }
+        int qualifier = i;
+        while (i < length && Character.isLetter(trimmed.charAt(i))) {
+            i++;
+        }
+        int rank = rank(trimmed.substring(qualifier, i));
+        int number = 0;
+        int digits = i;
+        while (i < length && trimmed.charAt(i) >= '0' && trimmed.charAt(i) <= '9' && i - digits < 9) {
+            number = number * 10 + (trimmed.charAt(i) - '0');
+            i++;
+        }
+        if (rank < 0 || i != length) {
+            return new Revision(trimmed, false, parts, 0, FINAL, FINAL);
+        }
+        return new Revision(trimmed, true, parts, count, rank, number);
+    }
+
+    private static int rank(String qualifier) {
+        switch (qualifier.toLowerCase(Locale.ROOT)) {
+        case "alpha":
+        case "a":
+            return 0;
+        case "beta":
+        case "b":
+            return 1;
+        case "rc":
+        case "preview":
+        case "":
+            return 2;
+        default:
+            return -1;
+        }
+    }
+
+    public int getMajor() {
+        return part(0);
+    }
+
+    public int getMinor() {
+        return part(1);
+    }
+
+    public int getMicro() {
+        return part(2);
+    }
+
+    /**
+     * @return the numeric component at index, 0 if there is none
+     */
+    public int part(int index) {
+        return index < parts.length ? parts[index] : 0;
+    }
+
+    public boolean isPreview() {
+        return preview != FINAL;
+    }
+
+    /**
+     * @return the preview number, 0 for a final release
+     */
+    public int getPreview() {
+        return isPreview() ? preview : 0;
+    }
+
+    @Override
+    public int compareTo(Revision other) {
+        if (!numeric || !other.numeric) {
+            return numeric == other.numeric ? text.compareTo(other.text) : (numeric ? 1 : -1);
+        }
+        int result = 0;
+        for (int i = 0; result == 0 && i < Math.max(parts.length, other.parts.length); i++) {
+            result = Integer.compare(part(i), other.part(i));
+        }
+        if (result == 0) {
+            result = Integer.compare(previewRank, other.previewRank);
+        }
+        if (result == 0) {
+            result = Integer.compare(preview, other.preview);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Revision && compareTo((Revision) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        if (!numeric) {
+            return text.hashCode();
+        }
+        return (Arrays.hashCode(parts) * 31 + previewRank) * 31 + preview;
+    }
+
+    /**
+     * @return the revision as it was given
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+}
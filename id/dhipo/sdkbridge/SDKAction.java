@@ -17,12 +17,19 @@
 
 package id.dhipo.sdkbridge;
 
+/**
+ * String-keyed event of the original listener API. New code should implement
+ * {@link SdkListener}; {@link SdkListener#of} keeps {@code Consumer<SDKAction>}
+ * listeners working.
+ */
 public class SDKAction {
 
     public static final String ACTION_PROGRESS = "PROGRESS";
     public static final String ACTION_INSTALLED = "INSTALLED";
     public static final String ACTION_AVAILABLE = "AVAILABLE";
+    public static final String ACTION_UPDATE = "UPDATE";
     public static final String ACTION_STATUS = "STATUS";
+    public static final String ACTION_REFRESH = "REFRESH";
     public static final String ACTION_ERROR = "ERROR";
     public static final String ACTION_DONE = "DONE";
     public static final String ACTION_OTHER = "OTHER";
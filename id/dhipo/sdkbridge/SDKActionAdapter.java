@@ -0,0 +1,83 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.util.function.Consumer;
+
+/**
+ * Turns typed events back into {@link SDKAction}s for listeners written before
+ * {@link SdkListener} existed. Rows keep the old extra layout: version and
+ * description (plus location for installed rows), or installed and available
+ * version for updates.
+ */
+public class SDKActionAdapter implements SdkListener {
+
+    private final Consumer<SDKAction> consumer;
+
+    public SDKActionAdapter(Consumer<SDKAction> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void onPackage(PackageRow row) {
+        switch (row.getKind()) {
+        case INSTALLED:
+            consumer.accept(new SDKAction(SDKAction.ACTION_INSTALLED, row.getId(),
+                    new String[] { row.getVersion(), row.getDescription(), row.getLocation() }));
+            break;
+        case AVAILABLE:
+            consumer.accept(new SDKAction(SDKAction.ACTION_AVAILABLE, row.getId(),
+                    new String[] { row.getVersion(), row.getDescription(), row.getLocation() }));
+            break;
+        default:
+            consumer.accept(new SDKAction(SDKAction.ACTION_UPDATE, row.getId(),
+                    new String[] { row.getInstalledVersion(), row.getVersion() }));
+            break;
+        }
+    }
+
+    @Override
+    public void onProgress(int percent) {
+        consumer.accept(new SDKAction(SDKAction.ACTION_PROGRESS, Integer.toString(percent)));
+    }
+
+    @Override
+    public void onStatus(String status) {
+        consumer.accept(new SDKAction(SDKAction.ACTION_STATUS, status));
+    }
+
+    @Override
+    public void onRefresh(int cachedRows) {
+        consumer.accept(new SDKAction(SDKAction.ACTION_REFRESH, Integer.toString(cachedRows)));
+    }
+
+    @Override
+    public void onOutput(String line) {
+        consumer.accept(new SDKAction(SDKAction.ACTION_OTHER, line));
+    }
+
+    @Override
+    public void onError(String message) {
+        consumer.accept(new SDKAction(SDKAction.ACTION_ERROR, message));
+    }
+
+    @Override
+    public void onDone() {
+        consumer.accept(new SDKAction(SDKAction.ACTION_DONE, ""));
+    }
+}
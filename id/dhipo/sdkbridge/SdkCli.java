@@ -0,0 +1,497 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line front end for scripts and CI machines. It only touches the
+ * sdkbridge classes, so neither AWT nor Swing is loaded.
+ *
+ * <pre>
+ * java -cp AndroidGUI.jar id.dhipo.sdkbridge.SdkCli [options] command [package...]
+ *
+ * Commands:
+ *   list                 all packages, one per line
+ *   diff package...      packages to install (and with --exact, to remove) to
+ *                        end up with exactly the given ones
+ *   install package...
+ *   remove package...
+ *   update               update all installed packages
+ *
+ * Options:
+ *   --sdk path           SDK root, defaults to ANDROID_HOME or ANDROID_SDK_ROOT
+ *   --json               one JSON object per line instead of tab separated fields
+ *   --offline            list from disk and the last cached listing only
+ *   --repository url     list available packages from repository manifests
+ *                        (URLs or files, comma separated) instead of sdkmanager
+ *   --installed          list installed packages only
+ *   --updates            list packages with an update only
+ *   --exact              diff also reports installed packages that were not asked for
+ *   --file path          read packages from a file, one per line, # for comments
+ *   --timeout minutes    kill sdkmanager after this long
+ *   --quiet              no progress on standard error
+ *   --record file.jfr    write a flight recording of the run, see {@link SdkMetrics}
+ * </pre>
+ *
+ * Exit codes are {@link #EXIT_OK}, {@link #EXIT_DIFFERENT} when diff found
+ * something to do, {@link #EXIT_USAGE} and {@link #EXIT_FAILED}.
+ */
+public class SdkCli {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_DIFFERENT = 1;
+    public static final int EXIT_USAGE = 2;
+    public static final int EXIT_FAILED = 3;
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private File sdkPath;
+    private boolean json, offline, installedOnly, updatesOnly, exact, quiet;
+    private long timeoutMinutes = -1;
+    private RepositorySource repository;
+    private File recordFile;
+    private String command;
+    private final Set<String> packages = new LinkedHashSet<String>();
+
+    /**
+     * A package as known after merging every row reported for its id.
+     */
+    private static final class Entry {
+        final String id;
+        String description = "";
+        String installed = "";
+        String available = "";
+        String location = "";
+
+        Entry(String id) {
+            this.id = id;
+        }
+
+        boolean hasUpdate() {
+            Revision current = Revision.parse(installed);
+            Revision latest = Revision.parse(available);
+            return current != null && latest != null && current.compareTo(latest) < 0;
+        }
+    }
+
+    public SdkCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new SdkCli(System.out, System.err).run(args));
+    }
+
+    /**
+     * Runs one command.
+     *
+     * @return the exit code
+     */
+    public int run(String[] args) {
+        try {
+            parseArguments(args);
+        } catch (IllegalArgumentException | IOException err) {
+            this.err.println("error: " + err.getMessage());
+            usage();
+            return EXIT_USAGE;
+        }
+        if (command == null) {
+            usage();
+            return EXIT_USAGE;
+        }
+        if (sdkPath == null || !sdkPath.isDirectory()) {
+            err.println("error: no SDK at " + sdkPath + ", use --sdk or set ANDROID_HOME");
+            return EXIT_USAGE;
+        }
+        if (recordFile == null) {
+            return execute();
+        }
+        try {
+            SdkMetrics.startRecording();
+        } catch (IllegalStateException err) {
+            this.err.println("error: " + err.getMessage());
+            return EXIT_USAGE;
+        }
+        try {
+            return execute();
+        } finally {
+            try {
+                SdkMetrics.dumpRecording(recordFile.toPath());
+            } catch (IOException err) {
+                this.err.println("error: could not write recording: " + err.getMessage());
+            }
+            SdkMetrics.stopRecording();
+        }
+    }
+
+    private int execute() {
+        switch (command) {
+        case "list":
+            return list();
+        case "diff":
+            return diff();
+        case "install":
+            return requirePackages() ? finish(sdk().installPackages(packageArray())) : EXIT_USAGE;
+        case "remove":
+            return requirePackages() ? finish(sdk().removePackages(packageArray())) : EXIT_USAGE;
+        case "update":
+            return finish(sdk().updateRepo());
+        default:
+            err.println("error: unknown command " + command);
+            usage();
+            return EXIT_USAGE;
+        }
+    }
+
+    private void parseArguments(String[] args) throws IOException {
+        String sdk = System.getenv("ANDROID_HOME");
+        if (sdk == null || sdk.isEmpty()) {
+            sdk = System.getenv("ANDROID_SDK_ROOT");
+        }
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+            case "--sdk":
+                sdk = value(args, ++i, arg);
+                break;
+            case "--json":
+                json = true;
+                break;
+            case "--offline":
+                offline = true;
+                break;
+            case "--installed":
+                installedOnly = true;
+                break;
+            case "--updates":
+                updatesOnly = true;
+                break;
+            case "--exact":
+                exact = true;
+                break;
+            case "--quiet":
+                quiet = true;
+                break;
+            case "--file":
+                readPackages(new File(value(args, ++i, arg)));
+                break;
+            case "--repository":
+                repository = RepositorySource.fromLocations(value(args, ++i, arg));
+                break;
+            case "--record":
+                recordFile = new File(value(args, ++i, arg));
+                break;
+            case "--timeout":
+                try {
+                    timeoutMinutes = Long.parseLong(value(args, ++i, arg));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("--timeout takes a number of minutes");
+                }
+                break;
+            default:
+                if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("unknown option " + arg);
+                } else if (command == null) {
+                    command = arg;
+                } else {
+                    packages.add(arg);
+                }
+                break;
+            }
+        }
+        sdkPath = sdk == null || sdk.isEmpty() ? null : new File(sdk);
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[i];
+    }
+
+    private void readPackages(File file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    packages.add(line);
+                }
+            }
+        }
+    }
+
+    private void usage() {
+        err.println("usage: SdkCli [--sdk path] [--json] [--quiet] [--timeout minutes] [--record file.jfr]");
+        err.println("              list [--offline | --repository url] [--installed | --updates]");
+        err.println("              diff [--exact] [--file path] package...");
+        err.println("              install [--file path] package...");
+        err.println("              remove [--file path] package...");
+        err.println("              update");
+    }
+
+    private boolean requirePackages() {
+        if (packages.isEmpty()) {
+            err.println("error: " + command + " needs at least one package");
+            return false;
+        }
+        return true;
+    }
+
+    private String[] packageArray() {
+        return packages.toArray(new String[0]);
+    }
+
+    private AndroidSDK sdk() {
+        AndroidSDK sdk = new AndroidSDK(sdkPath, new SdkListener() {
+            private int lastPercent = -1;
+
+            @Override
+            public void onProgress(int percent) {
+                if (!quiet && percent != lastPercent) {
+                    lastPercent = percent;
+                    err.print(percent + "% ");
+                }
+            }
+
+            @Override
+            public void onStatus(String status) {
+                if (!quiet && lastPercent >= 0) {
+                    err.println(status);
+                }
+            }
+
+            @Override
+            public void onOutput(String line) {
+                if (!quiet && !line.trim().isEmpty()) {
+                    err.println(line);
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                err.println("error: " + message);
+            }
+        });
+        if (repository != null) {
+            sdk.setRepository(repository);
+        }
+        if (timeoutMinutes >= 0) {
+            for (AndroidSDK.Operation operation : AndroidSDK.Operation.values()) {
+                sdk.setTimeout(operation, timeoutMinutes, TimeUnit.MINUTES);
+            }
+        }
+        return sdk;
+    }
+
+    private int finish(boolean success) {
+        if (json) {
+            StringBuilder line = new StringBuilder("{\"command\":");
+            quote(line, command).append(",\"ok\":").append(success).append(",\"packages\":[");
+            int i = 0;
+            for (String id : packages) {
+                if (i++ > 0) {
+                    line.append(',');
+                }
+                quote(line, id);
+            }
+            out.println(line.append("]}"));
+        } else {
+            out.println(success ? "ok" : "failed");
+        }
+        return success ? EXIT_OK : EXIT_FAILED;
+    }
+
+    private int list() {
+        TreeMap<String, Entry> entries = new TreeMap<String, Entry>();
+        SdkListener collector = new SdkListener() {
+            @Override
+            public void onPackage(PackageRow row) {
+                Entry entry = entries.computeIfAbsent(row.getId(), Entry::new);
+                switch (row.getKind()) {
+                case INSTALLED:
+                    entry.installed = row.getVersion();
+                    entry.location = row.getLocation();
+                    entry.description = row.getDescription();
+                    break;
+                case AVAILABLE:
+                    entry.available = row.getVersion();
+                    if (entry.description.isEmpty()) {
+                        entry.description = row.getDescription();
+                    }
+                    break;
+                default:
+                    entry.available = row.getVersion();
+                    break;
+                }
+            }
+
+            @Override
+            public void onRefresh(int cachedRows) {
+                // Cached rows are superseded by the live listing
+                entries.clear();
+            }
+        };
+        if (offline) {
+            // Only what is available comes from the cache; what is installed is on disk.
+            for (PackageRow row : new PackageListCache(sdkPath).load()) {
+                if (row.getKind() == PackageRow.Kind.AVAILABLE) {
+                    collector.onPackage(row);
+                }
+            }
+            new InstalledPackageScanner(sdkPath).scan(collector);
+        } else {
+            AndroidSDK sdk = sdk();
+            boolean[] failed = new boolean[1];
+            sdk.setListener(new SdkListener() {
+                @Override
+                public void onPackage(PackageRow row) {
+                    collector.onPackage(row);
+                }
+
+                @Override
+                public void onRefresh(int cachedRows) {
+                    collector.onRefresh(cachedRows);
+                }
+
+                @Override
+                public void onError(String message) {
+                    failed[0] = true;
+                    err.println("error: " + message);
+                }
+            });
+            sdk.getPackageList();
+            if (failed[0]) {
+                return EXIT_FAILED;
+            }
+        }
+        StringBuilder line = new StringBuilder();
+        for (Entry entry : entries.values()) {
+            if ((installedOnly && entry.installed.isEmpty()) || (updatesOnly && !entry.hasUpdate())) {
+                continue;
+            }
+            line.setLength(0);
+            if (json) {
+                line.append("{\"id\":");
+                quote(line, entry.id).append(",\"installed\":");
+                quote(line, entry.installed).append(",\"available\":");
+                quote(line, entry.available).append(",\"update\":").append(entry.hasUpdate())
+                        .append(",\"description\":");
+                quote(line, entry.description).append(",\"location\":");
+                quote(line, entry.location).append('}');
+            } else {
+                line.append(entry.id).append('\t').append(entry.installed).append('\t').append(entry.available)
+                        .append('\t').append(entry.description);
+            }
+            out.println(line);
+        }
+        return EXIT_OK;
+    }
+
+    /**
+     * Compares the requested packages with what is installed on disk. No
+     * sdkmanager process is started.
+     */
+    private int diff() {
+        Set<String> installed = new LinkedHashSet<String>();
+        for (PackageRow row : new InstalledPackageScanner(sdkPath).scan()) {
+            installed.add(row.getId());
+        }
+        List<String> installs = new ArrayList<String>();
+        for (String id : packages) {
+            if (!installed.contains(id)) {
+                installs.add(id);
+            }
+        }
+        List<String> removes = new ArrayList<String>();
+        if (exact) {
+            for (String id : installed) {
+                if (!packages.contains(id)) {
+                    removes.add(id);
+                }
+            }
+        }
+        printDiff("install", '+', installs);
+        printDiff("remove", '-', removes);
+        return installs.isEmpty() && removes.isEmpty() ? EXIT_OK : EXIT_DIFFERENT;
+    }
+
+    private void printDiff(String action, char sign, List<String> ids) {
+        StringBuilder line = new StringBuilder();
+        for (String id : ids) {
+            line.setLength(0);
+            if (json) {
+                line.append("{\"action\":");
+                quote(line, action).append(",\"id\":");
+                quote(line, id).append('}');
+            } else {
+                line.append(sign).append(' ').append(id);
+            }
+            out.println(line);
+        }
+    }
+
+    private static StringBuilder quote(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+                break;
+            }
+        }
+        return out.append('"');
+    }
+}
@@ -0,0 +1,79 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.util.function.Consumer;
+
+/**
+ * Receives what {@link AndroidSDK} learns from sdkmanager, one method per kind
+ * of event. Every method does nothing by default, so listeners only override
+ * what they care about. Methods are called on the thread reading sdkmanager's
+ * output; {@link #onOutput} may also be called from the thread reading its
+ * standard error.
+ */
+public interface SdkListener {
+
+    /**
+     * A row of one of the package tables.
+     */
+    default void onPackage(PackageRow row) {
+    }
+
+    /**
+     * The percentage of sdkmanager's progress bar.
+     */
+    default void onProgress(int percent) {
+    }
+
+    /**
+     * The text next to the progress bar, reported right after {@link #onProgress}.
+     */
+    default void onStatus(String status) {
+    }
+
+    /**
+     * Everything sent before came from the package list cache; the rows of a
+     * fresh listing follow.
+     *
+     * @param cachedRows how many rows were replayed from the cache
+     */
+    default void onRefresh(int cachedRows) {
+    }
+
+    /**
+     * A line that is neither a table row nor progress, including standard error.
+     */
+    default void onOutput(String line) {
+    }
+
+    default void onError(String message) {
+    }
+
+    /**
+     * The operation is over, successful or not. Always the last event of a run.
+     */
+    default void onDone() {
+    }
+
+    /**
+     * Adapts a listener written against {@link SDKAction}.
+     */
+    static SdkListener of(Consumer<SDKAction> consumer) {
+        return new SDKActionAdapter(consumer);
+    }
+}
@@ -0,0 +1,254 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Runs one sdkmanager process at a time; a second {@link #run} while one is
+ * in progress is refused. Arguments are passed as a list, so
+ * package paths never go through a shell; stdout and stderr are drained by
+ * their own threads so a chatty child can never block on a full pipe; and the
+ * run is bounded by a timeout and can be cancelled from any thread, which
+ * takes down sdkmanager together with the JVM it spawns.
+ */
+public class SdkManagerExecutor {
+
+    private static final long DESTROY_GRACE_MILLIS = 5000;
+    private static final long DRAIN_MILLIS = 10000;
+
+    private final File sdkPath;
+    // Guarded by this: whether run() is in progress, its process once started,
+    // and whether cancel() was called during it
+    private boolean inRun;
+    private Process process;
+    private boolean cancelled;
+
+    public SdkManagerExecutor(File sdkPath) {
+        this.sdkPath = sdkPath;
+    }
+
+    /**
+     * @return the sdkmanager launcher of the SDK, tools/bin/sdkmanager(.bat)
+     */
+    public File getLauncher() {
+        String osname = System.getProperty("os.name");
+        String sdkmanagerCmd = osname.contains("Windows") ? "sdkmanager.bat" : "sdkmanager";
+        return new File(new File(new File(sdkPath.getAbsoluteFile(), "tools"), "bin"), sdkmanagerCmd);
+    }
+
+    /**
+     * Starts sdkmanager and blocks until it exits and both output streams are
+     * drained. Its stdin is closed right away: sdkmanager then treats a license
+     * prompt as declined and fails instead of waiting forever for an answer.
+     *
+     * @param args    sdkmanager arguments, one element per argument
+     * @param timeout longest time the process may run, 0 for no limit
+     * @param stdout  receives standard output, read on its own thread
+     * @param stderr  receives standard error lines, read on its own thread
+     * @return the exit code
+     * @throws IOException           if the output could not be read, or was still
+     *                               being handled well after the process exited
+     * @throws TimeoutException      if the process had to be killed for running too long
+     * @throws CancellationException if {@link #cancel()} was called
+     * @throws IllegalStateException if another run is still in progress
+     */
+    public int run(List<String> args, long timeout, TimeUnit unit, OutputHandler stdout, Consumer<String> stderr)
+            throws IOException, InterruptedException, TimeoutException {
+        List<String> command = new ArrayList<String>(args.size() + 1);
+        command.add(getLauncher().getPath());
+        command.addAll(args);
+        synchronized (this) {
+            if (inRun) {
+                // cancel() and isRunning() only know about one process
+                throw new IllegalStateException("sdkmanager is already running");
+            }
+            inRun = true;
+            cancelled = false;
+        }
+        String arguments = String.join(" ", args);
+        SdkMetrics.FirstOutputEvent firstOutput = SdkMetrics.awaitingOutput(arguments);
+        SdkMetrics.LaunchEvent launch = SdkMetrics.launching(arguments);
+        Process proc;
+        try {
+            proc = new ProcessBuilder(command).directory(sdkPath.getAbsoluteFile()).start();
+        } catch (IOException err) {
+            finish();
+            throw err;
+        }
+        SdkMetrics.launched(launch);
+        synchronized (this) {
+            process = proc;
+            if (cancelled) {
+                // cancel() came in while the process was being started
+                daemon("sdkmanager-cancel", () -> destroyTree(proc));
+            }
+        }
+        Thread stdoutReader = null;
+        Thread stderrReader = null;
+        try {
+            proc.getOutputStream().close();
+            IOException[] readError = { null };
+            stdoutReader = daemon("sdkmanager-stdout", () -> {
+                try {
+                    stdout.handle(timeFirstByte(proc.getInputStream(), firstOutput));
+                } catch (IOException err) {
+                    readError[0] = err;
+                }
+            });
+            stderrReader = daemon("sdkmanager-stderr", () -> {
+                try (BufferedReader lines = new BufferedReader(
+                        new InputStreamReader(proc.getErrorStream(), Charset.defaultCharset()))) {
+                    String line;
+                    while ((line = lines.readLine()) != null) {
+                        stderr.accept(line);
+                    }
+                } catch (IOException err) {
+                    // The stream closes under us when the process is destroyed
+                }
+            });
+            boolean exited = true;
+            if (timeout > 0) {
+                exited = proc.waitFor(timeout, unit);
+            } else {
+                proc.waitFor();
+            }
+            if (!exited) {
+                destroyTree(proc);
+                stdoutReader.join();
+                stderrReader.join();
+                throw new TimeoutException("sdkmanager did not finish within " + unit.toSeconds(timeout) + " s");
+            }
+            stdoutReader.join(DRAIN_MILLIS);
+            stderrReader.join(DRAIN_MILLIS);
+            if (stdoutReader.isAlive() || stderrReader.isAlive()) {
+                // Something the process started still holds the pipes open, or
+                // the handler is still parsing. Either way the caller must not
+                // see the end of the run before the handler is done with it.
+                destroyTree(proc);
+                stdoutReader.join();
+                stderrReader.join();
+                throw new IOException("sdkmanager output did not end within " + DRAIN_MILLIS + " ms of its exit");
+            }
+            if (isCancelled()) {
+                throw new CancellationException("Cancelled");
+            }
+            if (readError[0] != null) {
+                throw readError[0];
+            }
+            return proc.exitValue();
+        } finally {
+            if (proc.isAlive()) {
+                destroyTree(proc);
+            }
+            finish();
+        }
+    }
+
+    /**
+     * Waits for the first byte of output and reports how long it took since
+     * launch, then hands the stream on with that byte put back.
+     */
+    private static InputStream timeFirstByte(InputStream output, SdkMetrics.FirstOutputEvent firstOutput)
+            throws IOException {
+        PushbackInputStream stream = new PushbackInputStream(output, 1);
+        int first = stream.read();
+        if (first >= 0) {
+            SdkMetrics.firstOutput(firstOutput);
+            stream.unread(first);
+        }
+        return stream;
+    }
+
+    private synchronized void finish() {
+        inRun = false;
+        process = null;
+    }
+
+    private synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stops the running process, if any, and everything it started. Returns
+     * immediately; {@link #run} then fails with a {@link CancellationException}.
+     * Does nothing when no run is in progress.
+     */
+    public synchronized void cancel() {
+        if (!inRun) {
+            return;
+        }
+        cancelled = true;
+        Process proc = process;
+        if (proc != null) {
+            daemon("sdkmanager-cancel", () -> destroyTree(proc));
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return inRun;
+    }
+
+    private static Thread daemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Asks the process tree to terminate, children first, and kills whatever is
+     * still alive after a grace period.
+     */
+    private static void destroyTree(Process proc) {
+        List<ProcessHandle> tree = new ArrayList<ProcessHandle>();
+        proc.descendants().forEach(tree::add);
+        tree.add(proc.toHandle());
+        for (ProcessHandle handle : tree) {
+            handle.destroy();
+        }
+        long deadline = System.currentTimeMillis() + DESTROY_GRACE_MILLIS;
+        for (ProcessHandle handle : tree) {
+            try {
+                long remaining = Math.max(1, deadline - System.currentTimeMillis());
+                handle.onExit().get(remaining, TimeUnit.MILLISECONDS);
+            } catch (Exception err) {
+                handle.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Consumes the standard output of the process.
+     */
+    public interface OutputHandler {
+        void handle(InputStream output) throws IOException;
+    }
+}
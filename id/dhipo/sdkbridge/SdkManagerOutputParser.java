@@ -0,0 +1,271 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Turns the text printed by {@code sdkmanager} into {@link SdkListener} events.
+ * <p>
+ * The parser is line driven and keeps only the current section and its column
+ * layout as state, so it can be fed from a live process, a captured file or a
+ * byte buffer. Table rows are split on {@code |} by hand; no regular
+ * expressions are involved.
+ */
+public class SdkManagerOutputParser {
+
+    private static final String SECTION_INSTALLED = "Installed packages:";
+    private static final String SECTION_AVAILABLE = "Available Packages:";
+    private static final String SECTION_UPDATES = "Available Updates:";
+
+    private final SdkListener listener;
+    // Kind of the table being read, or null outside of a table
+    private PackageRow.Kind section;
+    private boolean expectHeader;
+    private String[] cells = new String[0];
+    private int colId, colVersion, colDescription, colLocation, colInstalled, colAvailable;
+    private long lineCount;
+
+    public SdkManagerOutputParser(SdkListener listener) {
+        this.listener = listener;
+        reset();
+    }
+
+    /**
+     * Forgets the current section and the line count so the parser can be reused
+     * for another run.
+     */
+    public void reset() {
+        lineCount = 0;
+        section = null;
+        expectHeader = false;
+        colId = colVersion = colDescription = colLocation = colInstalled = colAvailable = -1;
+    }
+
+    public void parse(InputStream in) throws IOException {
+        parse(new InputStreamReader(in, Charset.defaultCharset()));
+    }
+
+    public void parse(Reader reader) throws IOException {
+        BufferedReader input = reader instanceof BufferedReader ? (BufferedReader) reader
+                : new BufferedReader(reader);
+        String line;
+        while ((line = input.readLine()) != null) {
+            parseLine(line);
+        }
+    }
+
+    public void parse(ByteBuffer buffer, Charset charset) {
+        parse(charset.decode(buffer));
+    }
+
+    /**
+     * Parses a block of text, treating {@code \n}, {@code \r} and {@code \r\n} as
+     * line separators the same way {@link BufferedReader#readLine()} does.
+     *
+     * @param text the captured output
+     */
+    public void parse(CharSequence text) {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                parseLine(text.subSequence(start, i).toString());
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            parseLine(text.subSequence(start, length).toString());
+        }
+    }
+
+    /**
+     * @return the lines parsed since the last {@link #reset()}
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public void parseLine(String line) {
+        lineCount++;
+        // Section headers may share a line with the tail of a progress bar that was
+        // overwritten with \r, e.g. "Installed packages:=====] 100% Computing updates..."
+        if (line.contains(SECTION_INSTALLED)) {
+            enterSection(PackageRow.Kind.INSTALLED);
+        } else if (line.contains(SECTION_AVAILABLE)) {
+            enterSection(PackageRow.Kind.AVAILABLE);
+        } else if (line.contains(SECTION_UPDATES)) {
+            enterSection(PackageRow.Kind.UPDATE);
+        } else if (section != null && line.indexOf('|') >= 0) {
+            parseRow(line);
+        } else if (line.indexOf('[') >= 0 && parseProgress(line)) {
+            return;
+        } else {
+            if (line.trim().isEmpty()) {
+                // A blank line closes the current table.
+                section = null;
+            }
+            listener.onOutput(line);
+        }
+    }
+
+    private void enterSection(PackageRow.Kind kind) {
+        section = kind;
+        expectHeader = true;
+    }
+
+    private void parseRow(String line) {
+        int count = split(line);
+        if (expectHeader) {
+            readLayout(count);
+            expectHeader = false;
+            return;
+        }
+        if (count == 0 || cells[0].startsWith("---") || colId < 0 || colId >= count) {
+            return;
+        }
+        PackageRow row;
+        switch (section) {
+        case INSTALLED:
+            row = PackageRow.installed(cells[colId], cell(colVersion, count), cell(colDescription, count),
+                    cell(colLocation, count));
+            break;
+        case AVAILABLE:
+            row = PackageRow.available(cells[colId], cell(colVersion, count), cell(colDescription, count));
+            break;
+        default:
+            row = PackageRow.update(cells[colId], cell(colInstalled, count), cell(colAvailable, count));
+            break;
+        }
+        listener.onPackage(row);
+    }
+
+    private void readLayout(int count) {
+        colId = colVersion = colDescription = colLocation = colInstalled = colAvailable = -1;
+        for (int i = 0; i < count; i++) {
+            switch (cells[i]) {
+            case "Path":
+            case "ID":
+                colId = i;
+                break;
+            case "Version":
+                colVersion = i;
+                break;
+            case "Description":
+                colDescription = i;
+                break;
+            case "Location":
+                colLocation = i;
+                break;
+            case "Installed":
+                colInstalled = i;
+                break;
+            case "Available":
+                colAvailable = i;
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private String cell(int column, int count) {
+        return column >= 0 && column < count ? cells[column] : "";
+    }
+
+    /**
+     * Splits a pipe-delimited row into {@link #cells}, trimming each cell.
+     *
+     * @return the number of cells found
+     */
+    private int split(String line) {
+        int count = 0;
+        int start = 0;
+        int length = line.length();
+        while (start <= length) {
+            int end = line.indexOf('|', start);
+            if (end < 0) {
+                end = length;
+            }
+            int from = start;
+            int to = end;
+            while (from < to && line.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && line.charAt(to - 1) <= ' ') {
+                to--;
+            }
+            if (count == cells.length) {
+                String[] grown = new String[count + 4];
+                System.arraycopy(cells, 0, grown, 0, count);
+                cells = grown;
+            }
+            cells[count++] = line.substring(from, to);
+            start = end + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Handles lines such as {@code [=====     ] 25% Fetch remote repository...}.
+     *
+     * @return false if the line does not carry a percentage
+     */
+    private boolean parseProgress(String line) {
+        int percent = line.indexOf('%');
+        if (percent < 0) {
+            return false;
+        }
+        int digitsEnd = percent;
+        while (digitsEnd > 0 && line.charAt(digitsEnd - 1) == ' ') {
+            digitsEnd--;
+        }
+        int digitsStart = digitsEnd;
+        while (digitsStart > 0 && line.charAt(digitsStart - 1) >= '0' && line.charAt(digitsStart - 1) <= '9') {
+            digitsStart--;
+        }
+        if (digitsStart == digitsEnd || digitsEnd - digitsStart > 3) {
+            return false;
+        }
+        int value = 0;
+        for (int i = digitsStart; i < digitsEnd; i++) {
+            value = value * 10 + (line.charAt(i) - '0');
+        }
+        int statusStart = percent + 1;
+        while (statusStart < line.length() && line.charAt(statusStart) <= ' ') {
+            statusStart++;
+        }
+        int statusEnd = line.length();
+        while (statusEnd > statusStart && line.charAt(statusEnd - 1) <= ' ') {
+            statusEnd--;
+        }
+        listener.onProgress(value);
+        listener.onStatus(line.substring(statusStart, statusEnd));
+        return true;
+    }
+}
@@ -0,0 +1,428 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Counters and Java Flight Recorder events for the stages of an sdkmanager
+ * run: starting the process, waiting for its first output, parsing its lines
+ * into events, the wait of those events in the Swing queue, and merging them
+ * into the table model.
+ * <p>
+ * The events are emitted whenever a recording is running, including one
+ * started with {@code -XX:StartFlightRecording}. {@link #startRecording()}
+ * starts one from inside the application, and setting the
+ * {@value #PROPERTY} system property to a file name records the whole session
+ * into that file. Nothing is sent anywhere; a recording is a local file to
+ * attach to a bug report.
+ */
+public final class SdkMetrics {
+
+    /**
+     * System property naming the file the session is recorded into.
+     */
+    public static final String PROPERTY = "androidgui.recording";
+    private static final Duration MAX_AGE = Duration.ofMinutes(30);
+
+    private static final LongAdder launches = new LongAdder();
+    private static final AtomicLong lastLaunch = new AtomicLong(-1);
+    private static final AtomicLong lastFirstOutput = new AtomicLong(-1);
+    private static final LongAdder lines = new LongAdder();
+    private static final LongAdder events = new LongAdder();
+    private static final AtomicLong lastLinesPerSecond = new AtomicLong(-1);
+    private static final LongAdder dispatches = new LongAdder();
+    private static final LongAdder queuedNanos = new LongAdder();
+    private static final AtomicLong maxQueued = new AtomicLong();
+    private static final LongAdder modelUpdates = new LongAdder();
+    private static final LongAdder modelRows = new LongAdder();
+    private static final LongAdder modelNanos = new LongAdder();
+    private static final AtomicLong maxModel = new AtomicLong();
+    private static Recording recording;
+
+    /**
+     * An event timed with {@link Event#begin()} and {@link Event#end()}, which
+     * also keeps its own start for the counters. Obtained from the
+     * {@code SdkMetrics} method named after the stage it times and handed back
+     * to the matching one when the stage is over.
+     */
+    public abstract static class StageEvent extends Event {
+        // Not part of the recorded event
+        transient long started;
+
+        StageEvent() {
+        }
+
+        void start() {
+            started = System.nanoTime();
+            begin();
+        }
+
+        /**
+         * @return nanoseconds since {@link #start()}
+         */
+        long finish() {
+            end();
+            return System.nanoTime() - started;
+        }
+    }
+
+    @Name("id.dhipo.SdkManagerLaunch")
+    @Label("sdkmanager Launch")
+    @Description("Starting an sdkmanager process")
+    @Category({ "AndroidGUI", "sdkmanager" })
+    @StackTrace(false)
+    public static final class LaunchEvent extends StageEvent {
+        @Label("Arguments")
+        String arguments;
+
+        LaunchEvent() {
+        }
+    }
+
+    @Name("id.dhipo.SdkManagerFirstOutput")
+    @Label("sdkmanager First Output")
+    @Description("From the start of an sdkmanager process to the first byte of its standard output")
+    @Category({ "AndroidGUI", "sdkmanager" })
+    @StackTrace(false)
+    public static final class FirstOutputEvent extends StageEvent {
+        @Label("Arguments")
+        String arguments;
+
+        FirstOutputEvent() {
+        }
+    }
+
+    @Name("id.dhipo.SdkManagerParse")
+    @Label("sdkmanager Output Parsed")
+    @Description("Reading and parsing the standard output of one sdkmanager run")
+    @Category({ "AndroidGUI", "sdkmanager" })
+    @StackTrace(false)
+    public static final class ParseEvent extends StageEvent {
+        @Label("Operation")
+        String operation;
+
+        @Label("Lines")
+        long lines;
+
+        @Label("Events Dispatched")
+        long events;
+
+        @Label("Waiting for Output")
+        @Description("Part of the duration spent waiting for sdkmanager to write more output")
+        @Timespan(Timespan.NANOSECONDS)
+        long waited;
+
+        @Label("Lines per Second")
+        @Description("Lines over the time spent parsing, waits for output left out")
+        long linesPerSecond;
+
+        ParseEvent() {
+        }
+    }
+
+    @Name("id.dhipo.EdtDispatch")
+    @Label("EDT Dispatch")
+    @Description("A runnable posted to the event dispatch thread, running; the wait before it is the queue latency")
+    @Category({ "AndroidGUI", "Swing" })
+    @StackTrace(false)
+    public static final class DispatchEvent extends StageEvent {
+        @Label("Source")
+        String source;
+
+        @Label("Queue Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+
+        DispatchEvent() {
+        }
+    }
+
+    @Name("id.dhipo.ModelUpdate")
+    @Label("Table Model Update")
+    @Description("Merging a chunk of package rows into the table model, listeners included")
+    @Category({ "AndroidGUI", "Swing" })
+    @StackTrace(false)
+    public static final class ModelUpdateEvent extends StageEvent {
+        @Label("Rows")
+        int rows;
+
+        @Label("Inserted")
+        int inserted;
+
+        @Label("Changed")
+        int changed;
+
+        ModelUpdateEvent() {
+        }
+    }
+
+    private SdkMetrics() {
+    }
+
+    /**
+     * An sdkmanager process is about to be started; pass the result to
+     * {@link #launched} once {@link ProcessBuilder#start()} returns.
+     */
+    public static LaunchEvent launching(String arguments) {
+        LaunchEvent event = new LaunchEvent();
+        event.arguments = arguments;
+        event.start();
+        return event;
+    }
+
+    public static void launched(LaunchEvent event) {
+        long elapsed = event.finish();
+        launches.increment();
+        lastLaunch.set(elapsed);
+        if (event.shouldCommit()) {
+            event.commit();
+        }
+    }
+
+    /**
+     * Starts timing the wait for a process's first output, ended by
+     * {@link #firstOutput}. Call it when the process is launched.
+     */
+    public static FirstOutputEvent awaitingOutput(String arguments) {
+        FirstOutputEvent event = new FirstOutputEvent();
+        event.arguments = arguments;
+        event.start();
+        return event;
+    }
+
+    public static void firstOutput(FirstOutputEvent event) {
+        lastFirstOutput.set(event.finish());
+        if (event.shouldCommit()) {
+            event.commit();
+        }
+    }
+
+    /**
+     * The output of a run is about to be parsed; pass the result to
+     * {@link #parsed} when it has been.
+     */
+    public static ParseEvent parsing(String operation) {
+        ParseEvent event = new ParseEvent();
+        event.operation = operation;
+        event.start();
+        return event;
+    }
+
+    /**
+     * @param lineCount  lines read
+     * @param eventCount listener events the lines turned into
+     * @param waited     nanoseconds of the parse spent blocked on the process's
+     *                   output, left out of the parse rate
+     */
+    public static void parsed(ParseEvent event, long lineCount, long eventCount, long waited) {
+        long working = event.finish() - waited;
+        lines.add(lineCount);
+        events.add(eventCount);
+        long perSecond = working > 0 ? lineCount * 1000000000L / working : 0;
+        lastLinesPerSecond.set(perSecond);
+        if (event.shouldCommit()) {
+            event.lines = lineCount;
+            event.events = eventCount;
+            event.waited = waited;
+            event.linesPerSecond = perSecond;
+            event.commit();
+        }
+    }
+
+    /**
+     * A runnable posted to the event dispatch thread is about to run; pass the
+     * result to {@link #dispatched} when it returns.
+     *
+     * @param latency nanoseconds it waited in the queue
+     */
+    public static DispatchEvent dispatching(String source, long latency) {
+        dispatches.increment();
+        queuedNanos.add(latency);
+        maxQueued.accumulateAndGet(latency, Math::max);
+        DispatchEvent event = new DispatchEvent();
+        event.source = source;
+        event.latency = latency;
+        event.start();
+        return event;
+    }
+
+    public static void dispatched(DispatchEvent event) {
+        event.finish();
+        if (event.shouldCommit()) {
+            event.commit();
+        }
+    }
+
+    /**
+     * A chunk of rows is about to be merged into the table model; pass the
+     * result to {@link #modelUpdated} when it has been.
+     */
+    public static ModelUpdateEvent updatingModel() {
+        ModelUpdateEvent event = new ModelUpdateEvent();
+        event.start();
+        return event;
+    }
+
+    public static void modelUpdated(ModelUpdateEvent event, int rows, int inserted, int changed) {
+        long elapsed = event.finish();
+        modelUpdates.increment();
+        modelRows.add(rows);
+        modelNanos.add(elapsed);
+        maxModel.accumulateAndGet(elapsed, Math::max);
+        if (event.shouldCommit()) {
+            event.rows = rows;
+            event.inserted = inserted;
+            event.changed = changed;
+            event.commit();
+        }
+    }
+
+    /**
+     * The counters, in display order, formatted for people.
+     */
+    public static Map<String, String> snapshot() {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        long dispatched = dispatches.sum();
+        long updates = modelUpdates.sum();
+        values.put("sdkmanager launches", Long.toString(launches.sum()));
+        values.put("Last launch", millis(lastLaunch.get()));
+        values.put("Last time to first output", millis(lastFirstOutput.get()));
+        values.put("Lines parsed", Long.toString(lines.sum()));
+        values.put("Last parse rate",
+                lastLinesPerSecond.get() < 0 ? "-" : lastLinesPerSecond.get() + " lines/s");
+        values.put("Events dispatched", Long.toString(events.sum()));
+        values.put("EDT runnables", Long.toString(dispatched));
+        values.put("EDT queue latency, mean", millis(dispatched == 0 ? -1 : queuedNanos.sum() / dispatched));
+        values.put("EDT queue latency, max", millis(dispatched == 0 ? -1 : maxQueued.get()));
+        values.put("Model updates", Long.toString(updates));
+        values.put("Rows merged", Long.toString(modelRows.sum()));
+        values.put("Model update cost, mean", millis(updates == 0 ? -1 : modelNanos.sum() / updates));
+        values.put("Model update cost, max", millis(updates == 0 ? -1 : maxModel.get()));
+        values.put("Recording", recordingState());
+        return values;
+    }
+
+    private static String millis(long nanos) {
+        return nanos < 0 ? "-" : String.format("%.1f ms", nanos / 1e6);
+    }
+
+    private static synchronized String recordingState() {
+        if (recording == null) {
+            return "off";
+        }
+        Instant start = recording.getStartTime();
+        return start == null ? "starting" : "since " + start;
+    }
+
+    public static boolean isRecordingAvailable() {
+        try {
+            return FlightRecorder.isAvailable();
+        } catch (LinkageError err) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts keeping the last 30 minutes of events, with
+     * the JDK's default settings for its own events. Does nothing if a
+     * recording is already running.
+     *
+     * @throws IllegalStateException if this JVM cannot record
+     */
+    public static synchronized void startRecording() {
+        if (recording != null) {
+            return;
+        }
+        if (!isRecordingAvailable()) {
+            throw new IllegalStateException("Flight Recorder is not available in this JVM");
+        }
+        Recording started;
+        try {
+            started = new Recording(Configuration.getConfiguration("default"));
+        } catch (IOException | ParseException err) {
+            started = new Recording();
+        }
+        started.setName("AndroidGUI");
+        started.setMaxAge(MAX_AGE);
+        started.setToDisk(true);
+        started.start();
+        recording = started;
+    }
+
+    public static synchronized boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Writes what has been recorded so far, which can be opened with JDK Mission
+     * Control or {@code jfr print}. The recording keeps running.
+     */
+    public static synchronized void dumpRecording(Path file) throws IOException {
+        if (recording == null) {
+            throw new IOException("No recording is running");
+        }
+        recording.dump(file);
+    }
+
+    public static synchronized void stopRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    /**
+     * Records the session into the file named by {@value #PROPERTY}, if set,
+     * writing it when the JVM exits.
+     */
+    public static void recordFromProperty() {
+        String file = System.getProperty(PROPERTY);
+        if (file == null || file.isEmpty() || !isRecordingAvailable()) {
+            return;
+        }
+        startRecording();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                dumpRecording(Paths.get(file));
+            } catch (IOException err) {
+                System.err.println("Could not write recording to " + file + ": " + err.getMessage());
+            }
+        }, "recording-dump"));
+    }
+}
@@ -0,0 +1,322 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs SDK operations one thread per task and keeps them from stepping on each
+ * other. Tasks on the same SDK root follow read/write rules: any number of
+ * {@link Access#READ} tasks (listings, scans) may run together, while an
+ * {@link Access#WRITE} task (install, remove, update) runs alone. Tasks start
+ * in the order they were submitted, so a write is never overtaken by reads
+ * queued after it. {@link Access#BACKGROUND} tasks are reads that give way
+ * instead: a write submitted for their root cancels them.
+ * <p>
+ * Threads are virtual when the JVM has them and plain daemon threads
+ * otherwise. A task is waited for with {@link Task#await()}; work it forks,
+ * such as the jobs of an {@link InstallScheduler}, has finished by the time the
+ * task returns.
+ */
+public class SdkTaskExecutor {
+
+    public enum Access {
+        READ, WRITE,
+        /**
+         * A read nobody waits for, such as measuring disk usage, which is
+         * cancelled as soon as a write is submitted for the same root.
+         */
+        BACKGROUND
+    }
+
+    public enum State {
+        PENDING, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    public interface Listener {
+        /**
+         * Called whenever a task is queued, starts or ends, on the thread that
+         * caused the change.
+         *
+         * @param tasks the pending and running tasks, in submission order
+         */
+        void tasksChanged(List<Task> tasks);
+    }
+
+    public final class Task {
+        private final String name;
+        private final File root;
+        private final String rootKey;
+        private final Access access;
+        private final Runnable body;
+        private final Runnable onCancel;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile State state = State.PENDING;
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+
+        Task(String name, File root, Access access, Runnable body, Runnable onCancel) {
+            this.name = name;
+            this.root = root;
+            this.rootKey = root.getAbsoluteFile().toPath().normalize().toString();
+            this.access = access;
+            this.body = body;
+            this.onCancel = onCancel;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public File getRoot() {
+            return root;
+        }
+
+        public Access getAccess() {
+            return access;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return what the task threw, if it failed
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /**
+         * Drops the task if it has not started, or asks it to stop if it has.
+         */
+        public void cancel() {
+            SdkTaskExecutor.this.cancel(this);
+        }
+
+        public void await() throws InterruptedException {
+            finished.await();
+        }
+
+        /**
+         * @return false if the task is still running after the timeout
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return finished.await(timeout, unit);
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + state.name().toLowerCase(Locale.ROOT) + ")";
+        }
+    }
+
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+
+    private final ThreadFactory threads;
+    // Pending and running tasks in submission order
+    private final List<Task> queue = new ArrayList<Task>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private boolean shutdown;
+
+    public SdkTaskExecutor() {
+        this(defaultThreadFactory());
+    }
+
+    public SdkTaskExecutor(ThreadFactory threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return a factory of virtual threads if the JVM supports them (Java 21 and
+     *         later), otherwise of daemon platform threads
+     */
+    public static ThreadFactory defaultThreadFactory() {
+        try {
+            // Looked up reflectively so the code still builds for and runs on older JVMs
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "sdk-task-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException err) {
+            return (task) -> {
+                Thread thread = new Thread(task, "sdk-task-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public Task submit(String name, File root, Access access, Runnable body) {
+        return submit(name, root, access, body, null);
+    }
+
+    /**
+     * Queues a task. It starts as soon as no conflicting task on the same SDK root
+     * is running or queued ahead of it. A write cancels the background tasks
+     * of its root first.
+     *
+     * @param onCancel how to stop the task once it is running, e.g.
+     *        {@link AndroidSDK#cancel()}; may be null
+     */
+    public Task submit(String name, File root, Access access, Runnable body, Runnable onCancel) {
+        Task task = new Task(name, root, access, body, onCancel);
+        List<Task> yielding = new ArrayList<Task>();
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            if (access == Access.WRITE) {
+                for (Task other : queue) {
+                    if (other.access == Access.BACKGROUND && other.rootKey.equals(task.rootKey)) {
+                        yielding.add(other);
+                    }
+                }
+            }
+            queue.add(task);
+            dispatch();
+        }
+        for (Task other : yielding) {
+            cancel(other);
+        }
+        fireChanged();
+        return task;
+    }
+
+    /**
+     * @return the pending and running tasks, in submission order
+     */
+    public synchronized List<Task> getTasks() {
+        return Collections.unmodifiableList(new ArrayList<Task>(queue));
+    }
+
+    public synchronized boolean isIdle() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * Cancels every pending and running task.
+     */
+    public void cancelAll() {
+        for (Task task : getTasks()) {
+            cancel(task);
+        }
+    }
+
+    /**
+     * Refuses new tasks and cancels the ones queued or running.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        cancelAll();
+    }
+
+    private void cancel(Task task) {
+        boolean running;
+        synchronized (this) {
+            if (task.cancelled || !queue.contains(task)) {
+                return;
+            }
+            task.cancelled = true;
+            running = task.state == State.RUNNING;
+            if (!running) {
+                queue.remove(task);
+                task.state = State.CANCELLED;
+                task.finished.countDown();
+                dispatch();
+            }
+        }
+        if (running && task.onCancel != null) {
+            task.onCancel.run();
+        }
+        fireChanged();
+    }
+
+    /**
+     * Starts every pending task that may run now. Called with the lock held.
+     */
+    private void dispatch() {
+        for (int i = 0; i < queue.size(); i++) {
+            Task task = queue.get(i);
+            if (task.state == State.PENDING && mayStart(task, i)) {
+                task.state = State.RUNNING;
+                threads.newThread(() -> run(task)).start();
+            }
+        }
+    }
+
+    private boolean mayStart(Task task, int position) {
+        for (int i = 0; i < queue.size(); i++) {
+            Task other = queue.get(i);
+            if (i == position || !other.rootKey.equals(task.rootKey)) {
+                continue;
+            }
+            boolean conflicts = task.access == Access.WRITE || other.access == Access.WRITE;
+            if (conflicts && (other.state == State.RUNNING || i < position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void run(Task task) {
+        try {
+            task.body.run();
+        } catch (Throwable err) {
+            task.failure = err;
+        } finally {
+            synchronized (this) {
+                queue.remove(task);
+                task.state = task.cancelled ? State.CANCELLED : task.failure != null ? State.FAILED : State.DONE;
+                dispatch();
+            }
+            task.finished.countDown();
+            fireChanged();
+        }
+    }
+
+    private void fireChanged() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        List<Task> tasks = getTasks();
+        for (Listener listener : listeners) {
+            listener.tasksChanged(tasks);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows package installs and removals made by other tools, such as Android
+ * Studio or Gradle, by watching the SDK root for {@code package.xml} files
+ * that appear, disappear or change.
+ * <p>
+ * Only the directories down to the package level are watched: the walk stops
+ * at the first directory holding a package.xml, the way
+ * {@link InstalledPackageScanner} does, so the thousands of directories inside
+ * system images and NDKs cost nothing. Events are collected until the tree
+ * has been quiet for a moment, or for at most a few seconds during a long
+ * unzip, and then reported as one batch of changed packages.
+ */
+public class SdkWatcher implements Closeable {
+
+    public static final long DEFAULT_QUIET_MS = 500;
+    private static final long MAX_DELAY_MS = 5000;
+    private static final long CLOSE_WAIT_MS = 2000;
+
+    public interface Listener {
+        /**
+         * Called on the watcher thread.
+         *
+         * @param installed packages that appeared or whose package.xml changed
+         * @param removed   ids of packages that disappeared
+         */
+        void packagesChanged(List<PackageRow> installed, List<String> removed);
+    }
+
+    private final Path root;
+    private final InstalledPackageScanner scanner;
+    private final Listener listener;
+    private final long quietMs;
+    // Watched directories and known package directories, used by the watcher
+    // thread only
+    private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+    private final Map<Path, String> packages = new HashMap<Path, String>();
+    private WatchService service;
+    private Thread thread;
+
+    public SdkWatcher(File sdkPath, Listener listener) {
+        this(sdkPath, listener, DEFAULT_QUIET_MS);
+    }
+
+    public SdkWatcher(File sdkPath, Listener listener, long quietMs) {
+        this.root = sdkPath.getAbsoluteFile().toPath();
+        this.scanner = new InstalledPackageScanner(sdkPath);
+        this.listener = listener;
+        this.quietMs = quietMs;
+    }
+
+    public File getSdkPath() {
+        return root.toFile();
+    }
+
+    /**
+     * Starts watching on a daemon thread. The packages present now are taken
+     * as known; only later changes are reported.
+     */
+    public synchronized void start() throws IOException {
+        if (service != null) {
+            return;
+        }
+        service = root.getFileSystem().newWatchService();
+        thread = new Thread(this::run, "sdk-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching and waits briefly for the watcher thread to end. No
+     * changes are reported after this returns.
+     */
+    @Override
+    public void close() {
+        Thread watching;
+        synchronized (this) {
+            if (service == null) {
+                return;
+            }
+            try {
+                service.close();
+            } catch (IOException err) {
+                // Closing is best effort; the thread is interrupted below anyway
+            }
+            watching = thread;
+        }
+        watching.interrupt();
+        if (watching != Thread.currentThread()) {
+            try {
+                watching.join(CLOSE_WAIT_MS);
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            register(root, new ArrayList<PackageRow>());
+            Set<Path> dirty = new LinkedHashSet<Path>();
+            long firstDirty = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key;
+                if (dirty.isEmpty()) {
+                    key = service.take();
+                    firstDirty = System.currentTimeMillis();
+                } else {
+                    long wait = Math.min(quietMs, firstDirty + MAX_DELAY_MS - System.currentTimeMillis());
+                    key = wait > 0 ? service.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+                if (key == null) {
+                    flush(dirty);
+                    dirty.clear();
+                    continue;
+                }
+                collect(key, dirty);
+            }
+        } catch (ClosedWatchServiceException | InterruptedException err) {
+            // close() was called
+        }
+    }
+
+    /**
+     * Notes the directories a key's events affect.
+     */
+    private void collect(WatchKey key, Set<Path> dirty) {
+        Path directory = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, look at everything again
+                dirty.add(root);
+                continue;
+            }
+            Path child = directory.resolve((Path) event.context());
+            String name = child.getFileName().toString();
+            if (name.equals(InstalledPackageScanner.PACKAGE_XML)) {
+                dirty.add(directory);
+            } else if (packages.containsKey(directory) || name.startsWith(".")) {
+                // The contents of a package, or sdkmanager's temporary directories
+                continue;
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE
+                    || (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child))) {
+                dirty.add(child);
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    /**
+     * Works out what changed under the dirty directories and reports it.
+     */
+    private void flush(Set<Path> dirty) {
+        List<PackageRow> installed = new ArrayList<PackageRow>();
+        List<String> removed = new ArrayList<String>();
+        for (Path path : dirty) {
+            if (path.equals(root)) {
+                dropUnder(root, removed, false);
+                register(root, installed);
+            } else if (Files.isDirectory(path)) {
+                PackageRow row = packages.containsKey(path) ? scanner.readPackage(path.toFile()) : null;
+                if (row != null) {
+                    // It may have been deleted and created again, losing its watch
+                    watch(path);
+                    installed.add(row);
+                    packages.put(path, row.getId());
+                } else {
+                    dropUnder(path, removed, true);
+                    register(path, installed);
+                }
+            } else {
+                dropUnder(path, removed, true);
+            }
+        }
+        // A package that went and came back within one batch was only updated
+        for (PackageRow row : installed) {
+            removed.remove(row.getId());
+        }
+        if (!installed.isEmpty() || !removed.isEmpty()) {
+            listener.packagesChanged(installed, removed);
+        }
+    }
+
+    /**
+     * Forgets the packages and watched directories at or below a path.
+     *
+     * @param report whether the packages count as removed
+     */
+    private void dropUnder(Path path, List<String> removed, boolean report) {
+        Iterator<Map.Entry<Path, String>> known = packages.entrySet().iterator();
+        while (known.hasNext()) {
+            Map.Entry<Path, String> entry = known.next();
+            if (entry.getKey().startsWith(path)) {
+                if (report || !Files.isRegularFile(entry.getKey().resolve(InstalledPackageScanner.PACKAGE_XML))) {
+                    removed.add(entry.getValue());
+                }
+                known.remove();
+            }
+        }
+        Iterator<Map.Entry<WatchKey, Path>> watched = keys.entrySet().iterator();
+        while (watched.hasNext()) {
+            Map.Entry<WatchKey, Path> entry = watched.next();
+            if (entry.getValue().startsWith(path)) {
+                entry.getKey().cancel();
+                watched.remove();
+            }
+        }
+    }
+
+    /**
+     * Watches a directory and the directories below it down to the package
+     * level, reading the packages found on the way.
+     *
+     * @param found receives the packages found
+     */
+    private void register(Path directory, List<PackageRow> found) {
+        int depth = root.relativize(directory).getNameCount();
+        if (directory.equals(root)) {
+            depth = 0;
+        }
+        if (!watch(directory)) {
+            return;
+        }
+        if (depth > 0 && Files.isRegularFile(directory.resolve(InstalledPackageScanner.PACKAGE_XML))) {
+            PackageRow row = scanner.readPackage(directory.toFile());
+            if (row != null) {
+                // Packages do not nest, no need to look further down
+                packages.put(directory, row.getId());
+                found.add(row);
+                return;
+            }
+        }
+        if (depth >= InstalledPackageScanner.MAX_DEPTH) {
+            return;
+        }
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                if (!child.getFileName().toString().startsWith(".") && Files.isDirectory(child)) {
+                    register(child, found);
+                }
+            }
+        } catch (IOException err) {
+            // Removed while being walked; its delete event follows
+        }
+    }
+
+    /**
+     * Watches a single directory. Watching one that already is does no harm.
+     *
+     * @return false if the directory is gone or not readable
+     */
+    private boolean watch(Path directory) {
+        try {
+            keys.put(directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), directory);
+            return true;
+        } catch (IOException err) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import id.dhipo.sdkbridge.PackageRow;
+
+class ChangePlannerTest {
+
+    private static final String IMAGE = "system-images;android-30;google_apis;x86_64";
+    private static final String PLATFORM = "platforms;android-30";
+
+    private final TablePackagesModel model = new TablePackagesModel();
+    private final Map<String, List<String>> dependencies = new HashMap<String, List<String>>();
+
+    @BeforeEach
+    void listSdk() {
+        model.updatePackages(Arrays.asList(
+                PackageRow.installed("emulator", "30.0.5", "Android Emulator", "emulator"),
+                PackageRow.installed("platform-tools", "30.0.4", "Android SDK Platform-Tools", "platform-tools"),
+                PackageRow.installed("build-tools;30.0.2", "30.0.2", "Android SDK Build-Tools 30",
+                        "build-tools/30.0.2"),
+                PackageRow.available("emulator", "30.0.5", "Android Emulator"),
+                PackageRow.available("platform-tools", "30.0.4", "Android SDK Platform-Tools"),
+                PackageRow.available("build-tools;30.0.2", "30.0.2", "Android SDK Build-Tools 30"),
+                PackageRow.available("build-tools;30.0.3", "30.0.3", "Android SDK Build-Tools 30.0.3"),
+                PackageRow.available(PLATFORM, "3", "Android SDK Platform 30"),
+                PackageRow.available(IMAGE, "9", "Google APIs Intel x86 Atom_64 System Image")));
+        dependencies.put(IMAGE, Arrays.asList(PLATFORM, "emulator"));
+        dependencies.put("build-tools;30.0.2", Collections.singletonList("platform-tools"));
+    }
+
+    @Test
+    void installsDependenciesFirst() {
+        ChangePlanner.Plan plan = plan(2, install(IMAGE));
+
+        assertEquals(Arrays.asList(PLATFORM, IMAGE), ids(plan));
+        assertEquals("Needed by " + IMAGE, plan.getReason(0));
+        assertEquals("Marked", plan.getReason(1));
+    }
+
+    @Test
+    void keepsRemovalOthersDependOn() {
+        ChangePlanner.Plan plan = plan(2, remove("platform-tools"), remove("emulator"), install(IMAGE));
+
+        // build-tools;30.0.2 stays installed and the image is about to be
+        assertEquals(Arrays.asList(PLATFORM, IMAGE), ids(plan));
+        assertEquals(0, plan.getRemoves().length);
+        assertEquals(Arrays.asList("Keeping emulator, " + IMAGE + " depends on it",
+                "Keeping platform-tools, Android SDK Build-Tools 30 depends on it"), plan.getNotes());
+    }
+
+    @Test
+    void removesWhatNothingDependsOn() {
+        ChangePlanner.Plan plan = plan(2, remove("platform-tools"), remove("build-tools;30.0.2"));
+
+        assertArrayEquals(new String[] { "platform-tools", "build-tools;30.0.2" }, plan.getRemoves());
+        assertTrue(plan.getNotes().isEmpty());
+    }
+
+    @Test
+    void dropsChangesThatChangeNothing() {
+        ChangePlanner.Plan plan = plan(2, remove(PLATFORM), install("emulator"));
+
+        assertTrue(plan.isEmpty());
+        assertEquals(0, plan.getLaunchCount());
+        assertEquals(Arrays.asList(PLATFORM + " is not installed, nothing to remove",
+                "emulator is already up to date"), plan.getNotes());
+    }
+
+    @Test
+    void groupsPackagesWithTheirDependencies() {
+        ChangePlanner.Plan plan = plan(2, install(IMAGE), install("build-tools;30.0.3"));
+
+        assertEquals(2, plan.getGroups().size());
+        assertArrayEquals(new String[] { PLATFORM, IMAGE }, plan.getGroups().get(0));
+        assertArrayEquals(new String[] { "build-tools;30.0.3" }, plan.getGroups().get(1));
+        assertEquals(2, plan.getLaunchCount());
+        assertEquals(1, plan(1, install(IMAGE), install("build-tools;30.0.3")).getLaunchCount());
+    }
+
+    private ChangePlanner.Plan plan(int concurrency, ChangeSet.Change... marked) {
+        return new ChangePlanner(model, dependencies, concurrency).plan(new ChangeSet(Arrays.asList(marked)));
+    }
+
+    private static ChangeSet.Change install(String id) {
+        return new ChangeSet.Change(ChangeSet.Action.INSTALL, id, id, "", "");
+    }
+
+    private static ChangeSet.Change remove(String id) {
+        return new ChangeSet.Change(ChangeSet.Action.REMOVE, id, id, "", "");
+    }
+
+    private static List<String> ids(ChangePlanner.Plan plan) {
+        List<String> ids = new ArrayList<String>();
+        for (ChangeSet.Change change : plan.getChanges()) {
+            ids.add(change.getId());
+        }
+        return ids;
+    }
+}
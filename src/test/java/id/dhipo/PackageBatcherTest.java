@@ -0,0 +1,59 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+import id.dhipo.sdkbridge.PackageRow;
+
+class PackageBatcherTest {
+
+    private final TablePackagesModel model = new TablePackagesModel();
+    private final PackageBatcher batcher = new PackageBatcher(model);
+
+    @Test
+    void postsQueuedRows() throws Exception {
+        batcher.onPackage(PackageRow.available("emulator", "30.2.6", "Android Emulator"));
+        batcher.onPackage(PackageRow.available("platform-tools", "30.0.5", "Android SDK Platform-Tools"));
+        batcher.onDone();
+        SwingUtilities.invokeAndWait(() -> {
+        });
+
+        assertEquals(2, model.getRowCount());
+    }
+
+    @Test
+    void discardDropsChunksAlreadyPosted() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            batcher.onPackage(PackageRow.available("emulator", "30.2.6", "Android Emulator"));
+            // Posted behind the task running now, so still waiting when discarded
+            batcher.flush();
+            batcher.discard();
+            batcher.onPackage(PackageRow.available("platform-tools", "30.0.5", "Android SDK Platform-Tools"));
+            batcher.flush();
+        });
+        SwingUtilities.invokeAndWait(() -> {
+        });
+
+        assertEquals(0, model.getRowCount());
+    }
+}
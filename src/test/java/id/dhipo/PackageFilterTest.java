@@ -0,0 +1,80 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Collections;
+
+import javax.swing.JTable;
+import javax.swing.table.TableRowSorter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import id.dhipo.sdkbridge.PackageIndex;
+import id.dhipo.sdkbridge.PackageRow;
+
+class PackageFilterTest {
+
+    private final TablePackagesModel model = new TablePackagesModel();
+    private final PackageIndex index = new PackageIndex();
+    private final PackageFilter filter = new PackageFilter(index);
+    private TableRowSorter<TablePackagesModel> sorter;
+    private JTable table;
+
+    @BeforeEach
+    void listSdk() {
+        add(PackageRow.available("platforms;android-30", "3", "Android SDK Platform 30"));
+        add(PackageRow.available("emulator", "30.2.6", "Android Emulator"));
+        sorter = new TableRowSorter<TablePackagesModel>(model);
+        sorter.setRowFilter(filter);
+        // The table passes model events on to the sorter
+        table = new JTable(model);
+        table.setRowSorter(sorter);
+    }
+
+    @Test
+    void showsMatchingRows() {
+        filter.setQuery("platform 30");
+        sorter.sort();
+        assertEquals(1, table.getRowCount());
+
+        assertFalse(filter.setQuery("  "));
+        sorter.sort();
+        assertEquals(2, table.getRowCount());
+    }
+
+    @Test
+    void searchesAgainWhenPackagesArrive() {
+        filter.setQuery("android-34");
+        sorter.sort();
+        assertEquals(0, table.getRowCount());
+
+        // Rows still being listed reach the index and the table after the query
+        add(PackageRow.available("platforms;android-34", "2", "Android SDK Platform 34"));
+        add(PackageRow.available("sources;android-34", "1", "Sources for Android 34"));
+        assertEquals(2, table.getRowCount());
+    }
+
+    private void add(PackageRow row) {
+        index.add(row);
+        model.updatePackages(Collections.singletonList(row));
+    }
+}
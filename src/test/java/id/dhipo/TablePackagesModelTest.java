@@ -0,0 +1,110 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import id.dhipo.sdkbridge.ChangeReport;
+import id.dhipo.sdkbridge.PackageRow;
+import id.dhipo.sdkbridge.Transcripts;
+
+class TablePackagesModelTest {
+
+    private static final ChangeSet.Change REMOVE_EMULATOR = new ChangeSet.Change(ChangeSet.Action.REMOVE,
+            "emulator", "Android Emulator", "30.0.5", "30.0.5");
+    private static final ChangeSet.Change INSTALL_PLATFORM = new ChangeSet.Change(ChangeSet.Action.INSTALL,
+            "platforms;android-30", "Android SDK Platform 30", "", "3");
+    private static final ChangeSet.Change INSTALL_BUILD_TOOLS = new ChangeSet.Change(ChangeSet.Action.INSTALL,
+            "build-tools;30.0.3", "Android SDK Build-Tools 30.0.3", "", "30.0.3");
+
+    private TablePackagesModel model;
+    private final List<int[]> updates = new ArrayList<int[]>();
+
+    @BeforeEach
+    void listSdk() {
+        model = new TablePackagesModel();
+        model.updatePackages(Arrays.asList(
+                PackageRow.installed("emulator", "30.0.5", "Android Emulator", "emulator"),
+                PackageRow.available("emulator", "30.0.5", "Android Emulator"),
+                PackageRow.available("platform-tools", "31.0.3", "Android SDK Platform-Tools"),
+                PackageRow.available("platforms;android-30", "3", "Android SDK Platform 30"),
+                PackageRow.available("build-tools;30.0.3", "30.0.3", "Android SDK Build-Tools 30.0.3")));
+        model.addTableModelListener((event) -> updates.add(new int[] { event.getFirstRow(), event.getLastRow() }));
+    }
+
+    @Test
+    void appliesVerboseTranscripts() {
+        ChangeReport report = Transcripts.report("uninstall-verbose.txt", "install-verbose.txt");
+
+        assertTrue(model.applyReport(Arrays.asList(REMOVE_EMULATOR, INSTALL_PLATFORM, INSTALL_BUILD_TOOLS), report));
+
+        assertFalse(model.getPackage("emulator").isInstalled());
+        assertEquals("3", model.getPackage("platforms;android-30").getVersionInstalled());
+        assertEquals("platforms/android-30/", model.getPackage("platforms;android-30").getLocation());
+        assertEquals("30.0.3", model.getPackage("build-tools;30.0.3").getVersionInstalled());
+        assertFalse(model.getPackage("platform-tools").isInstalled());
+        // The emulator row, then the platform and build tools rows next to each other
+        assertEquals(2, updates.size());
+    }
+
+    @Test
+    void needsListingWhenPlannedChangeIsMissing() {
+        ChangeReport report = Transcripts.report("install-verbose.txt");
+
+        assertFalse(model.applyReport(Arrays.asList(REMOVE_EMULATOR, INSTALL_PLATFORM, INSTALL_BUILD_TOOLS), report));
+
+        assertTrue(model.getPackage("emulator").isInstalled());
+        assertFalse(model.getPackage("platforms;android-30").isInstalled());
+        assertTrue(updates.isEmpty());
+    }
+
+    @Test
+    void needsListingForUnknownPackage() {
+        ChangeReport report = Transcripts.report("install-verbose.txt");
+        report.accept("Info: \"Install Mystery Package (revision: 2)\" finished.");
+
+        assertFalse(model.applyReport(Arrays.asList(INSTALL_PLATFORM, INSTALL_BUILD_TOOLS), report));
+        assertTrue(updates.isEmpty());
+    }
+
+    @Test
+    void relistingForgetsWhereRemovedPackageWas() {
+        model.setSizes(Collections.singletonMap("emulator", 1024L));
+        updates.clear();
+
+        model.beginRefresh();
+        model.updatePackages(Arrays.asList(
+                PackageRow.available("emulator", "30.0.5", "Android Emulator"),
+                PackageRow.available("platform-tools", "31.0.3", "Android SDK Platform-Tools")));
+
+        assertFalse(model.getPackage("emulator").isInstalled());
+        assertEquals("", model.getPackage("emulator").getLocation());
+        assertEquals(-1, model.getPackage("emulator").getSize());
+        assertEquals(1, updates.size());
+    }
+}
@@ -0,0 +1,80 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ChangeReportTest {
+
+    @Test
+    void readsInstallsFromVerboseTranscript() {
+        Map<String, ChangeReport.Result> results = Transcripts.report("install-verbose.txt").getResults();
+
+        assertEquals(Arrays.asList("Android SDK Platform 30", "Android SDK Build-Tools 30.0.3"),
+                Arrays.asList(results.keySet().toArray()));
+        assertEquals(ChangeReport.Outcome.INSTALLED, results.get("Android SDK Platform 30").getOutcome());
+        assertEquals("3", results.get("Android SDK Platform 30").getRevision());
+        assertEquals("30.0.3", results.get("Android SDK Build-Tools 30.0.3").getRevision());
+    }
+
+    @Test
+    void readsUninstallsFromVerboseTranscript() {
+        Map<String, ChangeReport.Result> results = Transcripts.report("uninstall-verbose.txt").getResults();
+
+        assertEquals(1, results.size());
+        assertEquals(ChangeReport.Outcome.UNINSTALLED, results.get("Android Emulator").getOutcome());
+        assertEquals("30.0.5", results.get("Android Emulator").getRevision());
+    }
+
+    @Test
+    void ignoresProgressAndPreparationLines() {
+        ChangeReport report = new ChangeReport();
+        report.accept("Info: Preparing \"Install Android SDK Platform 30 (revision: 3)\".");
+        report.accept("Info: \"Install Android SDK Platform 30 (revision: 3)\" ready.");
+        report.accept("Info: Installing Android SDK Platform 30 in /sdk/platforms/android-30");
+        report.accept("Unzipping... android-30/android.jar");
+        report.accept("Installed packages:");
+
+        assertTrue(report.isEmpty());
+    }
+
+    @Test
+    void readsFailures() {
+        ChangeReport report = new ChangeReport();
+        report.accept("Warning: Failed to find package 'platforms;android-99'");
+        report.accept("Warning: \"Install Google APIs (revision: 1)\" failed.");
+
+        assertEquals(ChangeReport.Outcome.FAILED, report.getResults().get("platforms;android-99").getOutcome());
+        assertEquals(ChangeReport.Outcome.FAILED, report.getResults().get("Google APIs").getOutcome());
+    }
+
+    @Test
+    void keepsRevisionWhenLaterLineHasNone() {
+        ChangeReport report = new ChangeReport();
+        report.accept("Info: \"Install Android Emulator (revision: 30.0.12)\" complete.");
+        report.accept("Installed Android Emulator");
+
+        assertEquals("30.0.12", report.getResults().get("Android Emulator").getRevision());
+    }
+}
@@ -0,0 +1,90 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PackageIndexTest {
+
+    private static final String IMAGE_34 = "system-images;android-34;google_apis;x86_64";
+    private static final String IMAGE_34_ARM = "system-images;android-34;google_apis;arm64-v8a";
+    private static final String IMAGE_30 = "system-images;android-30;google_apis;x86";
+
+    private final PackageIndex index = new PackageIndex();
+
+    @BeforeEach
+    void indexPackages() {
+        index.add(IMAGE_34, "Google APIs Intel x86_64 Atom System Image");
+        index.add(IMAGE_34_ARM, "Google APIs ARM 64 v8a System Image");
+        index.add(IMAGE_30, "Google APIs Intel x86 Atom System Image");
+        index.add("platforms;android-34", "Android SDK Platform 34");
+        index.add("build-tools;34.0.0", "Android SDK Build-Tools 34");
+    }
+
+    @Test
+    void everyTermMustMatch() {
+        assertEquals(set(IMAGE_34, IMAGE_34_ARM, IMAGE_30), index.search("sys google"));
+        assertEquals(set(IMAGE_34, IMAGE_34_ARM), index.search("sys 34"));
+        assertEquals(set(IMAGE_34), index.search("sys 34 x86"));
+        assertEquals(set(), index.search("sys 34 mips"));
+    }
+
+    @Test
+    void matchesWholeAndSplitSegments() {
+        assertEquals(set(IMAGE_34), index.search("x86_64"));
+        assertEquals(set(IMAGE_34, IMAGE_30), index.search("x86"));
+        assertEquals(set(IMAGE_34, IMAGE_34_ARM, "platforms;android-34"), index.search("android-34"));
+        assertEquals(set("platforms;android-34"), index.search("android-34 platform"));
+        // A pasted id is split on ';' into one term per segment
+        assertEquals(set(IMAGE_34), index.search(IMAGE_34));
+    }
+
+    @Test
+    void queryWithoutTermsMatchesEverything() {
+        assertNull(index.search(""));
+        assertNull(index.search(" ; "));
+    }
+
+    @Test
+    void addedPackagesAreFoundAndChangeTheVersion() {
+        int version = index.getVersion();
+        assertEquals(set("platforms;android-34"), index.search("platform 34"));
+
+        index.add("platforms;android-34-ext8", "Android SDK Platform 34-ext8");
+        assertNotEquals(version, index.getVersion());
+        assertEquals(set("platforms;android-34", "platforms;android-34-ext8"), index.search("platform 34"));
+
+        version = index.getVersion();
+        index.add("platforms;android-34", "Android SDK Platform 34");
+        assertEquals(version, index.getVersion());
+    }
+
+    private static HashSet<String> set(String... ids) {
+        HashSet<String> set = new HashSet<String>();
+        Collections.addAll(set, ids);
+        return set;
+    }
+}
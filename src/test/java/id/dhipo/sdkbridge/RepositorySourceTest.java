@@ -0,0 +1,107 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Reads the manifests under src/test/resources/id/dhipo/sdkbridge/repository,
+ * cut down copies of dl.google.com's, and compares the packages found with
+ * the Available Packages table sdkmanager prints for them.
+ */
+class RepositorySourceTest {
+
+    private static final String[] MANIFESTS = { "repository/addons_list-5.xml", "repository/repository2-3.xml" };
+
+    @Test
+    void listsWhatSdkmanagerLists() throws Exception {
+        assertEquals(sdkmanagerList(), repository(false));
+    }
+
+    @Test
+    void leavesOutObsoletePackages() throws Exception {
+        Map<String, String> rows = repository(true);
+
+        // obsolete="true" and <obsolete>true</obsolete>
+        assertFalse(rows.containsKey("tools"));
+        assertFalse(rows.containsKey("platforms;android-10"));
+        assertFalse(rows.containsKey("system-images;android-15;default;armeabi-v7a"));
+        assertTrue(rows.containsKey("build-tools;31.0.0-rc1"));
+    }
+
+    @Test
+    void keepsDependencies() throws Exception {
+        RepositorySource source = source();
+        source.read(new SdkListener() {
+        });
+
+        assertEquals(Arrays.asList("patcher;v4"), source.getDependencies("emulator"));
+        assertEquals(Arrays.asList("emulator"), source.getDependencies("system-images;android-30;default;x86_64"));
+        assertTrue(source.getDependencies("tools").isEmpty());
+    }
+
+    private static RepositorySource source() throws URISyntaxException {
+        StringBuilder locations = new StringBuilder();
+        for (String manifest : MANIFESTS) {
+            URL url = RepositorySourceTest.class.getResource(manifest);
+            locations.append(url.toURI().getPath()).append(',');
+        }
+        return RepositorySource.fromLocations(locations.toString());
+    }
+
+    private static Map<String, String> repository(boolean includePreviews) throws Exception {
+        RepositorySource source = source();
+        source.setIncludePreviews(includePreviews);
+        Rows rows = new Rows();
+        source.read(rows);
+        return rows.found;
+    }
+
+    private static Map<String, String> sdkmanagerList() throws IOException {
+        Rows rows = new Rows();
+        try (InputStream in = RepositorySourceTest.class.getResourceAsStream("repository/list-available.txt")) {
+            new SdkManagerOutputParser(rows).parse(in);
+        }
+        return rows.found;
+    }
+
+    /**
+     * Available rows by id, as "version | description".
+     */
+    private static class Rows implements SdkListener {
+        final Map<String, String> found = new TreeMap<String, String>();
+
+        @Override
+        public void onPackage(PackageRow row) {
+            assertEquals(PackageRow.Kind.AVAILABLE, row.getKind());
+            found.put(row.getId(), row.getVersion() + " | " + row.getDescription());
+        }
+    }
+}
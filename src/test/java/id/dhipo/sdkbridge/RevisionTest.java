@@ -0,0 +1,81 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RevisionTest {
+
+    @Test
+    void releaseCandidateComesBeforeRelease() {
+        assertTrue(compare("30.0.3 rc1", "30.0.3") < 0);
+        assertTrue(compare("30.0.3", "30.0.3 rc1") > 0);
+        assertTrue(compare("30.0.3 rc1", "30.0.2") > 0);
+    }
+
+    @Test
+    void missingComponentsCountAsZero() {
+        assertEquals(0, compare("2", "2.0"));
+        assertEquals(0, compare("2", "2.0.0.0"));
+        assertEquals(Revision.parse("2"), Revision.parse("2.0"));
+        assertEquals(Revision.parse("2").hashCode(), Revision.parse("2.0").hashCode());
+    }
+
+    @Test
+    void previewsCompareByNumber() {
+        assertTrue(compare("30.0.0 rc1", "30.0.0 rc2") < 0);
+        assertTrue(compare("30.0.0-rc10", "30.0.0-rc2") > 0);
+    }
+
+    @Test
+    void betaComesBetweenAlphaAndReleaseCandidate() {
+        Revision beta = Revision.parse("7.0.0-beta");
+        assertTrue(beta.isPreview());
+        assertEquals(0, beta.getPreview());
+        assertTrue(compare("7.0.0-alpha02", "7.0.0-beta") < 0);
+        assertTrue(compare("7.0.0-beta", "7.0.0-beta1") < 0);
+        assertTrue(compare("7.0.0-beta", "7.0.0 rc1") < 0);
+        assertTrue(compare("7.0.0-beta", "7.0.0") < 0);
+    }
+
+    @Test
+    void comparesEveryComponent() {
+        assertTrue(compare("1.0.0.1", "1.0.0") > 0);
+        assertTrue(compare("1.0.0.1", "1.0.0.2") < 0);
+        assertTrue(compare("1.0.0.1 rc1", "1.0.0.1") < 0);
+        assertEquals(1, Revision.parse("1.0.0.1").part(3));
+        assertEquals(0, Revision.parse("1.0.0.1").getMicro());
+    }
+
+    @Test
+    void keepsTextThatIsNoRevision() {
+        assertNull(Revision.parse(" "));
+        assertFalse(Revision.parse("latest").isPreview());
+        assertTrue(compare("latest", "1.0") < 0);
+        assertEquals("latest", Revision.parse("latest").toString());
+    }
+
+    private static int compare(String left, String right) {
+        return Revision.parse(left).compareTo(Revision.parse(right));
+    }
+}
@@ -0,0 +1,117 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SdkManagerOutputParserTest {
+
+    private final List<PackageRow> rows = new ArrayList<PackageRow>();
+    private final List<Integer> progress = new ArrayList<Integer>();
+    private final List<String> statuses = new ArrayList<String>();
+    private final List<String> output = new ArrayList<String>();
+
+    @BeforeEach
+    void parseListing() throws IOException {
+        SdkManagerOutputParser parser = new SdkManagerOutputParser(new SdkListener() {
+            @Override
+            public void onPackage(PackageRow row) {
+                rows.add(row);
+            }
+
+            @Override
+            public void onProgress(int percent) {
+                progress.add(percent);
+            }
+
+            @Override
+            public void onStatus(String status) {
+                statuses.add(status);
+            }
+
+            @Override
+            public void onOutput(String line) {
+                output.add(line);
+            }
+        });
+        // Recorded sdkmanager --list, progress bars redrawn with \r included
+        try (InputStream in = getClass().getResourceAsStream("list.txt")) {
+            parser.parse(in);
+        }
+    }
+
+    @Test
+    void readsEverySection() {
+        assertEquals(12, rows.size());
+        assertEquals(4, count(PackageRow.Kind.INSTALLED));
+        assertEquals(6, count(PackageRow.Kind.AVAILABLE));
+        assertEquals(2, count(PackageRow.Kind.UPDATE));
+    }
+
+    @Test
+    void readsColumnsByHeader() {
+        PackageRow installed = rows.get(0);
+        assertEquals(PackageRow.Kind.INSTALLED, installed.getKind());
+        assertEquals("build-tools;30.0.2", installed.getId());
+        assertEquals("30.0.2", installed.getVersion());
+        assertEquals("Android SDK Build-Tools 30", installed.getDescription());
+        assertEquals("build-tools/30.0.2/", installed.getLocation());
+
+        PackageRow image = rows.get(9);
+        assertEquals(PackageRow.Kind.AVAILABLE, image.getKind());
+        assertEquals("system-images;android-30;google_apis;x86_64", image.getId());
+        assertEquals("9", image.getVersion());
+        assertEquals("Google APIs Intel x86 Atom_64 System Image", image.getDescription());
+
+        PackageRow update = rows.get(10);
+        assertEquals(PackageRow.Kind.UPDATE, update.getKind());
+        assertEquals("emulator", update.getId());
+        assertEquals("30.0.5", update.getInstalledVersion());
+        assertEquals("30.2.6", update.getVersion());
+    }
+
+    @Test
+    void reportsProgressAndStatus() {
+        assertEquals(Arrays.asList(6, 25, 50, 98), progress);
+        assertEquals(Arrays.asList("Loading local repository...", "Fetch remote repository...",
+                "Fetch remote repository...", "Computing updates..."), statuses);
+    }
+
+    @Test
+    void passesOtherLinesThrough() {
+        assertTrue(output.get(0).startsWith("Warning: Mapping new ns"));
+        assertEquals("done", output.get(output.size() - 1));
+        for (String line : output) {
+            assertTrue(line.indexOf('|') < 0, line);
+        }
+    }
+
+    private long count(PackageRow.Kind kind) {
+        return rows.stream().filter((row) -> row.getKind() == kind).count();
+    }
+}
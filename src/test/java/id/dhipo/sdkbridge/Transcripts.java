@@ -0,0 +1,63 @@
+// Copyright (C) 2019 Dhipo Alam <dhipo.alam@outlook.com>
+// 
+// This file is part of AndroidGUI.
+// 
+// AndroidGUI is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+// 
+// AndroidGUI is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with AndroidGUI.  If not, see <http://www.gnu.org/licenses/>.
+
+package id.dhipo.sdkbridge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Feeds the sdkmanager transcripts under src/test/resources to a
+ * {@link ChangeReport} the way an install job does: every output line and
+ * every progress status goes to {@link ChangeReport#accept(String)}.
+ * <p>
+ * The transcripts follow what sdkmanager prints with {@code --verbose},
+ * progress bars redrawn with {@code \r} included.
+ */
+public final class Transcripts {
+
+    private Transcripts() {
+    }
+
+    public static ChangeReport report(String... resources) {
+        ChangeReport report = new ChangeReport();
+        SdkManagerOutputParser parser = new SdkManagerOutputParser(new SdkListener() {
+            @Override
+            public void onStatus(String status) {
+                report.accept(status);
+            }
+
+            @Override
+            public void onOutput(String line) {
+                report.accept(line);
+            }
+        });
+        for (String resource : resources) {
+            try (InputStream in = Transcripts.class.getResourceAsStream(resource)) {
+                if (in == null) {
+                    throw new IllegalArgumentException("No transcript " + resource);
+                }
+                parser.reset();
+                parser.parse(in);
+            } catch (IOException err) {
+                throw new UncheckedIOException(err);
+            }
+        }
+        return report;
+    }
+}